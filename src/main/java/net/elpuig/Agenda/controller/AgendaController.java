@@ -1,33 +1,64 @@
 package net.elpuig.Agenda.controller;
 
+import jakarta.servlet.http.HttpServletResponse;
 import net.elpuig.Agenda.model.AgendaViewModel;
+import net.elpuig.Agenda.model.CursorFranjas;
+import net.elpuig.Agenda.model.Incidencia;
+import net.elpuig.Agenda.model.InformeUtilizacion;
+import net.elpuig.Agenda.model.ProgresoProcesamiento;
 import net.elpuig.Agenda.model.Reserva;
+import net.elpuig.Agenda.model.ResultadoAgenda;
+import net.elpuig.Agenda.model.TrabajoAgenda;
 import net.elpuig.Agenda.service.AgendaProcessor;
+import net.elpuig.Agenda.service.AnaliticaService;
 import net.elpuig.Agenda.service.DataLoader;
-import net.elpuig.Agenda.service.I18nService;
+import net.elpuig.Agenda.service.FragmentoSalaCache;
+import net.elpuig.Agenda.service.ProcesamientoAgendaService;
+import net.elpuig.Agenda.service.TrabajoAgendaService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
 import java.io.InputStream;
 import java.time.LocalDate;
 import java.time.YearMonth;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 @Controller
 public class AgendaController {
 
     private static final Logger logger = LoggerFactory.getLogger(AgendaController.class);
 
+    // Longest window accepted by /analitica
+    private static final int MAX_ANYOS_ANALITICA = 10;
+
+    @Autowired
+    private ProcesamientoAgendaService procesamientoAgendaService;
+
+    @Autowired
+    private TrabajoAgendaService trabajoAgendaService;
+
     @Autowired
-    private I18nService i18nService;
+    private FragmentoSalaCache fragmentoSalaCache;
+
+    @Autowired
+    private AnaliticaService analiticaService;
 
     @Autowired
     private AgendaProcessor agendaProcessor;
@@ -44,6 +75,8 @@ public class AgendaController {
     public String procesarArchivos(
             @RequestParam("configFile") MultipartFile configFile,
             @RequestParam("peticionesFile") MultipartFile peticionesFile,
+            @RequestParam(value = "calendarioFile", required = false) MultipartFile calendarioFile,
+            @RequestParam(value = "async", defaultValue = "false") boolean async,
             RedirectAttributes redirectAttributes) {
 
         if (configFile.isEmpty() || peticionesFile.isEmpty()) {
@@ -51,13 +84,28 @@ public class AgendaController {
             return "redirect:/upload";
         }
 
-        try (InputStream configInputStream = configFile.getInputStream();
-             InputStream peticionesInputStream = peticionesFile.getInputStream()) {
+        if (calendarioFile != null && calendarioFile.isEmpty()) {
+            calendarioFile = null; // The optional calendar input was left empty
+        }
+
+        if (async) {
+            // El procesamiento sigue en segundo plano; el cliente consulta el progreso con el id del trabajo
+            try {
+                TrabajoAgenda trabajo = trabajoAgendaService.enviar(configFile, peticionesFile, calendarioFile);
+                return "redirect:/trabajos/" + trabajo.getId();
+            } catch (Exception e) {
+                logger.error("Error al encolar el procesamiento: {}", e.getMessage(), e);
+                redirectAttributes.addFlashAttribute("error", "Error al procesar los archivos: " + e.getMessage());
+                return "redirect:/upload";
+            }
+        }
 
-            dataLoader.cargarArchivos(configInputStream, peticionesInputStream, i18nService.getTodosLosIdiomasTraducciones());
+        try (InputStream configInputStream = configFile.getInputStream();
+             InputStream peticionesInputStream = peticionesFile.getInputStream();
+             InputStream calendarioInputStream = calendarioFile != null ? calendarioFile.getInputStream() : null) {
 
-            // CORRECCIÓN: Pasar las traducciones al AgendaProcessor
-            agendaProcessor.procesarReservas(dataLoader.getReservas(), dataLoader.getTraducciones());
+            procesamientoAgendaService.procesar(configInputStream, peticionesInputStream, calendarioInputStream,
+                    new ProgresoProcesamiento());
 
             return "redirect:/agenda";
 
@@ -75,63 +123,149 @@ public class AgendaController {
         }
     }
 
+    /**
+     * Página de espera de un trabajo en segundo plano; consulta el progreso y redirige a la agenda al terminar.
+     */
+    @GetMapping("/trabajos/{id}")
+    public String mostrarTrabajo(@PathVariable String id, Model model) {
+        TrabajoAgenda trabajo = trabajoAgendaService.getTrabajo(id);
+        if (trabajo == null) {
+            model.addAttribute("error", "No existe el trabajo " + id + ". Por favor, sube los archivos de nuevo.");
+            return "upload";
+        }
+        model.addAttribute("trabajo", trabajo);
+        return "trabajo";
+    }
+
+    @GetMapping(value = "/trabajos/{id}/progreso", produces = "application/json")
+    @ResponseBody
+    public ResponseEntity<ProgresoProcesamiento> obtenerProgreso(@PathVariable String id) {
+        TrabajoAgenda trabajo = trabajoAgendaService.getTrabajo(id);
+        if (trabajo == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+        }
+        return ResponseEntity.ok(trabajo.getProgreso());
+    }
+
     @GetMapping("/agenda")
-    public String mostrarAgenda(Model model) {
-        if (dataLoader.getMesProcesar() == null || dataLoader.getIdiomaSalida() == null) {
+    public String mostrarAgenda(@RequestParam(value = "sala", required = false) String sala,
+                                WebRequest webRequest, HttpServletResponse response, Model model) {
+        ResultadoAgenda resultado = procesamientoAgendaService.getUltimoResultado();
+        if (resultado == null) {
             model.addAttribute("error", "No se ha cargado la configuración de la agenda. Por favor, sube los archivos.");
             return "upload";
         }
+        return mostrarResultado(resultado, sala, webRequest, response, model);
+    }
+
+    @GetMapping("/agenda/{id}")
+    public String mostrarAgendaTrabajo(@PathVariable String id,
+                                       @RequestParam(value = "sala", required = false) String sala,
+                                       WebRequest webRequest, HttpServletResponse response, Model model) {
+        ResultadoAgenda resultado = procesamientoAgendaService.getResultado(id);
+        if (resultado != null) {
+            return mostrarResultado(resultado, sala, webRequest, response, model);
+        }
+        if (trabajoAgendaService.getTrabajo(id) != null) {
+            return "redirect:/trabajos/" + id; // Still running or failed on this node: show its progress
+        }
+        model.addAttribute("error", "No existe el trabajo " + id + ". Por favor, sube los archivos de nuevo.");
+        return "upload";
+    }
+
+    private String mostrarResultado(ResultadoAgenda resultado, String sala, WebRequest webRequest,
+                                    HttpServletResponse response, Model model) {
+        // Conditional GET: the content hash was computed when the files were processed, so an
+        // unchanged agenda is answered with 304 before building the view model or the template
+        String etag = "\"" + (sala == null ? resultado.getHuella() : resultado.getHuellaSala(sala)) + "\"";
+        response.setHeader(HttpHeaders.CACHE_CONTROL, "no-cache"); // Always revalidate, never serve stale
+        if (webRequest.checkNotModified(etag, resultado.getFechaProcesamiento().toEpochMilli())) {
+            return null;
+        }
 
-        AgendaViewModel agendaViewModel = construirAgendaViewModel();
+        // The page itself only needs the month and the incidencias; room tables come from the
+        // fragment cache, which builds a view model just for the rooms it has to re-render
+        AgendaViewModel agendaViewModel = construirAgendaViewModel(resultado, Set.of());
+        resultado.getIncidencias().forEach(agendaViewModel::addIncidencia);
         model.addAttribute("agendaViewModel", agendaViewModel);
+        model.addAttribute("fragmentosSala", fragmentoSalaCache.renderizarSalas(resultado, sala,
+                salas -> construirAgendaViewModel(resultado, salas)));
 
         if (model.asMap().containsKey("incidenciasProcesamiento")) {
             model.addAttribute("incidenciasProcesamiento", model.asMap().get("incidenciasProcesamiento"));
         }
-        if (model.asMap().containsKey("incidenciasCarga")) {
-            model.addAttribute("incidenciasCarga", model.asMap().get("incidenciasCarga"));
-        }
+        // Lines skipped while loading (peticiones.txt or calendario.txt) are part of the result
+        model.addAttribute("incidenciasCarga", resultado.getIncidenciasCarga());
         
         return "agenda";
     }
 
-    private AgendaViewModel construirAgendaViewModel() {
-        YearMonth mesProcesar = dataLoader.getMesProcesar();
-        Map<String, String> traduccionesSalida = dataLoader.getTraducciones();
+    /**
+     * Incidencias del último procesamiento en formato JSON, con la franja en conflicto
+     * y la reserva aceptada que la ocupa.
+     */
+    @GetMapping(value = "/incidencias", produces = "application/json")
+    @ResponseBody
+    public List<Incidencia> obtenerIncidencias() {
+        ResultadoAgenda resultado = procesamientoAgendaService.getUltimoResultado();
+        return resultado != null ? resultado.getIncidenciasDetalladas() : List.of();
+    }
+
+    /**
+     * Informe de utilización por sala (por día de la semana, franja y hora), horas pico y tasa
+     * de rechazo del último procesamiento. Por defecto cubre el mes procesado.
+     */
+    @GetMapping(value = "/analitica", produces = "application/json")
+    @ResponseBody
+    public ResponseEntity<InformeUtilizacion> obtenerAnalitica(
+            @RequestParam(value = "desde", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate desde,
+            @RequestParam(value = "hasta", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate hasta,
+            @RequestParam(value = "top", defaultValue = "5") int top) {
+        ResultadoAgenda resultado = procesamientoAgendaService.getUltimoResultado();
+        if (resultado == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+        }
+        LocalDate inicio = desde != null ? desde : resultado.getMesProcesar().atDay(1);
+        LocalDate fin = hasta != null ? hasta : resultado.getMesProcesar().atEndOfMonth();
+        if (fin.isBefore(inicio) || inicio.plusYears(MAX_ANYOS_ANALITICA).isBefore(fin) || top < 0) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(analiticaService.calcular(resultado, inicio, fin, top));
+    }
+
+    // Builds the occupancy of the given rooms only
+    private AgendaViewModel construirAgendaViewModel(ResultadoAgenda resultado, Set<String> salas) {
+        YearMonth mesProcesar = resultado.getMesProcesar();
+        Map<String, String> traduccionesSalida = resultado.getTraducciones();
 
         if (mesProcesar == null || traduccionesSalida == null || traduccionesSalida.isEmpty()) {
             throw new IllegalStateException("Datos de configuración o traducciones no inicializados. ¿Se cargó config.txt correctamente?");
         }
 
         AgendaViewModel viewModel = new AgendaViewModel(mesProcesar, traduccionesSalida);
+        viewModel.setCalendario(resultado.getCalendario());
+        if (salas.isEmpty()) {
+            return viewModel;
+        }
 
-        for (Reserva reserva : agendaProcessor.getReservasValidas()) {
-            LocalDate fechaActual = reserva.getFechaInicio();
-            while (!fechaActual.isAfter(reserva.getFechaFin())) {
-                if (fechaActual.getMonth() == mesProcesar.getMonth() && fechaActual.getYear() == mesProcesar.getYear()) {
-                    String diaCodigo = AgendaViewModel.getCodigoDia(fechaActual.getDayOfWeek());
-                    
-                    if (reserva.getDiasSemana().contains(diaCodigo)) {
-                        String[] horas = reserva.getHorarios().split("_");
-                        for (String horario : horas) {
-                            String[] partes = horario.split("-");
-                            int inicio = Integer.parseInt(partes[0]);
-                            int fin = Integer.parseInt(partes[1]);
-                            for (int hora = inicio; hora < fin; hora++) {
-                                String horaStr = String.format("%02d:00-%02d:00", hora, hora + 1);
-                                viewModel.addReserva(reserva.getSala(), fechaActual, horaStr, reserva.getNombreActividad());
-                            }
-                        }
-                    }
+        // Only the processed month is expanded: days outside it are never visited
+        LocalDate inicioMes = mesProcesar.atDay(1);
+        LocalDate finMes = mesProcesar.atEndOfMonth();
+        CursorFranjas cursor = new CursorFranjas();
+        for (Reserva reserva : resultado.getReservasValidas()) {
+            if (!salas.contains(reserva.getSala())) {
+                continue;
+            }
+            cursor.reiniciar(reserva, inicioMes, finMes);
+            while (cursor.siguiente()) {
+                LocalDate fecha = cursor.getFecha();
+                for (int horas = cursor.getMascaraHoras(); horas != 0; horas &= horas - 1) {
+                    String horaStr = CursorFranjas.getFranja(Integer.numberOfTrailingZeros(horas));
+                    viewModel.addReserva(reserva.getSala(), fecha, horaStr, reserva.getNombreActividad());
                 }
-                fechaActual = fechaActual.plusDays(1);
             }
         }
 
-        if (agendaProcessor.getIncidencias() != null) {
-            agendaProcessor.getIncidencias().forEach(viewModel::addIncidencia);
-        }
-        
         return viewModel;
     }
-}
\ No newline at end of file
+}
@@ -8,10 +8,14 @@ import java.util.*;
 import java.util.stream.Collectors;
 
 public class AgendaViewModel {
+    // Cell text for closed slots when the output language has no "closed" translation
+    private static final String CERRADO_POR_DEFECTO = "Tancat";
+
     private Map<String, Map<LocalDate, Map<String, String>>> agendaPorSala;
     private List<String> incidencias;
     private YearMonth mesProcesar;
     private Map<String, String> traducciones;
+    private CalendarioCierres calendario = CalendarioCierres.VACIO;
 
     public AgendaViewModel(YearMonth mesProcesar, Map<String, String> traducciones) {
         this.mesProcesar = mesProcesar;
@@ -31,6 +35,11 @@ public class AgendaViewModel {
         incidencias.add(incidencia);
     }
 
+    // Closed hours are read from the calendar bitmaps, they are never added slot by slot
+    public void setCalendario(CalendarioCierres calendario) {
+        this.calendario = calendario;
+    }
+
     // Getters para Thymeleaf
     public String getMesNombre() {
         if (mesProcesar == null) {
@@ -105,11 +114,32 @@ public class AgendaViewModel {
 
 
     public String getEstado(String sala, LocalDate fecha, String hora) {
+        if (getActividad(sala, fecha, hora) != null) return "ocupado";
+        return isCerrado(sala, fecha, hora) ? "closed" : "libre";
+    }
+
+    /**
+     * Texto de la celda: la actividad que ocupa la franja, "Cerrado" (traducido, o "Tancat"
+     * si el idioma no lo traduce) si el calendario de cierres la cierra, o null si está libre.
+     */
+    public String getContenido(String sala, LocalDate fecha, String hora) {
+        String actividad = getActividad(sala, fecha, hora);
+        if (actividad != null) return actividad;
+        return isCerrado(sala, fecha, hora) ? traducciones.getOrDefault("closed", CERRADO_POR_DEFECTO) : null;
+    }
+
+    private String getActividad(String sala, LocalDate fecha, String hora) {
         Map<LocalDate, Map<String, String>> fechas = agendaPorSala.get(sala);
-        if (fechas == null) return "libre";
-        
+        if (fechas == null) return null;
+
         Map<String, String> horarios = fechas.get(fecha);
-        return (horarios != null && horarios.containsKey(hora)) ? "ocupado" : "libre";
+        return horarios != null ? horarios.get(hora) : null;
+    }
+
+    // 'hora' is the slot label, "HH:00-HH:00": its first two digits are the bit in the closed hours mask
+    private boolean isCerrado(String sala, LocalDate fecha, String hora) {
+        int cerradas = calendario.getHorasCerradas(sala, fecha);
+        return cerradas != 0 && (cerradas >>> Integer.parseInt(hora, 0, 2, 10) & 1) != 0;
     }
 
     // Getters estándar
@@ -0,0 +1,92 @@
+package net.elpuig.Agenda.model;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Utilización de una sala en una ventana de fechas. Las tasas van de 0 a 1:
+ * horas ocupadas / horas disponibles. La tasa de rechazo se limita a la misma ventana:
+ * reservas con alguna franja rechazada en ella / reservas con alguna franja aceptada o
+ * rechazada en ella. Los errores de formato no tienen fecha y cuentan en cualquier ventana.
+ */
+public class AnaliticaSala {
+    private final String sala;
+    private final long horasOcupadas;
+    private final long horasDisponibles;
+    private final double utilizacion;
+    private final double[] utilizacionPorDiaSemana;        // 0 = lunes
+    private final Map<String, Double> utilizacionPorFranja; // e.g., "08-14" -> 0.42
+    private final double[][] matrizUtilizacion;           // [día de la semana][hora]
+    private final List<Integer> horasPico;                // Horas más ocupadas, de más a menos
+    private final int reservasSolicitadas;
+    private final int reservasRechazadas;
+    private final double tasaRechazo;
+
+    public AnaliticaSala(String sala, long horasOcupadas, long horasDisponibles, double[] utilizacionPorDiaSemana,
+                         Map<String, Double> utilizacionPorFranja, double[][] matrizUtilizacion, List<Integer> horasPico,
+                         int reservasSolicitadas, int reservasRechazadas) {
+        this.sala = sala;
+        this.horasOcupadas = horasOcupadas;
+        this.horasDisponibles = horasDisponibles;
+        this.utilizacion = tasa(horasOcupadas, horasDisponibles);
+        this.utilizacionPorDiaSemana = utilizacionPorDiaSemana;
+        this.utilizacionPorFranja = utilizacionPorFranja;
+        this.matrizUtilizacion = matrizUtilizacion;
+        this.horasPico = horasPico;
+        this.reservasSolicitadas = reservasSolicitadas;
+        this.reservasRechazadas = reservasRechazadas;
+        this.tasaRechazo = tasa(reservasRechazadas, reservasSolicitadas);
+    }
+
+    /**
+     * Cociente redondeado a 4 decimales para que el informe JSON sea legible; 0 si no hay total.
+     */
+    public static double tasa(long parte, long total) {
+        return total == 0 ? 0 : Math.round(10_000.0 * parte / total) / 10_000.0;
+    }
+
+    // Getters
+    public String getSala() {
+        return sala;
+    }
+
+    public long getHorasOcupadas() {
+        return horasOcupadas;
+    }
+
+    public long getHorasDisponibles() {
+        return horasDisponibles;
+    }
+
+    public double getUtilizacion() {
+        return utilizacion;
+    }
+
+    public double[] getUtilizacionPorDiaSemana() {
+        return utilizacionPorDiaSemana;
+    }
+
+    public Map<String, Double> getUtilizacionPorFranja() {
+        return utilizacionPorFranja;
+    }
+
+    public double[][] getMatrizUtilizacion() {
+        return matrizUtilizacion;
+    }
+
+    public List<Integer> getHorasPico() {
+        return horasPico;
+    }
+
+    public int getReservasSolicitadas() {
+        return reservasSolicitadas;
+    }
+
+    public int getReservasRechazadas() {
+        return reservasRechazadas;
+    }
+
+    public double getTasaRechazo() {
+        return tasaRechazo;
+    }
+}
@@ -0,0 +1,151 @@
+package net.elpuig.Agenda.model;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import java.time.LocalDate;
+import java.util.*;
+
+/**
+ * Calendario de cierres (festivos, vacaciones, horas sin servicio) para todas las salas o
+ * para una sala concreta. Sustituye a una línea "Tancat" por sala y periodo.
+ *
+ * Las reglas se compilan en mapas de bits de días (un bit por día, en palabras de 64 días)
+ * agrupados por ámbito (todas las salas o una sala) y máscara de horas. Saber qué horas
+ * están cerradas en una sala un día cuesta unas pocas operaciones de bits, sin expandir
+ * franjas. Se guarda como JSON con sus reglas; los mapas de bits se recalculan al leerlo.
+ */
+public class CalendarioCierres {
+
+    /** Sala de las reglas que se aplican a todas las salas. */
+    public static final String TODAS = "*";
+
+    public static final CalendarioCierres VACIO = new CalendarioCierres(List.of());
+
+    /**
+     * Regla del calendario: la sala (o {@link #TODAS}) está cerrada de desde a hasta, ambos
+     * incluidos, en las horas indicadas con el formato de peticiones.txt (ej. "00-24", "14-16_18-20").
+     */
+    public record Cierre(String sala, LocalDate desde, LocalDate hasta, String horarios) {
+    }
+
+    // Day bitmaps of one scope: bit (day - primerDia) of dias[k] is set when the hours in
+    // mascaras[k] are closed that day. Rules sharing an hour mask share a bitmap.
+    private static final class Ambito {
+        int[] mascaras = new int[0];
+        long[][] dias = new long[0][];
+    }
+
+    private final List<Cierre> cierres;
+    private final long primerDia;
+    private final int numeroDias;
+    private final Ambito global;
+    private final Map<String, Ambito> porSala = new HashMap<>();
+
+    /**
+     * @throws NumberFormatException Si los horarios de alguna regla no se pueden interpretar
+     */
+    @JsonCreator(mode = JsonCreator.Mode.PROPERTIES)
+    public CalendarioCierres(List<Cierre> cierres) {
+        this.cierres = cierres != null ? List.copyOf(cierres) : List.of();
+        this.primerDia = this.cierres.stream().mapToLong(c -> c.desde().toEpochDay()).min().orElse(0);
+        this.numeroDias = (int) (this.cierres.stream().mapToLong(c -> c.hasta().toEpochDay()).max().orElse(-1) - primerDia + 1);
+
+        Ambito globalCompilado = null;
+        for (Cierre cierre : this.cierres) {
+            Ambito ambito;
+            if (TODAS.equals(cierre.sala())) {
+                ambito = globalCompilado != null ? globalCompilado : (globalCompilado = new Ambito());
+            } else {
+                ambito = porSala.computeIfAbsent(cierre.sala(), k -> new Ambito());
+            }
+            marcar(bitmap(ambito, CursorFranjas.mascaraHoras(cierre.horarios())),
+                    (int) (cierre.desde().toEpochDay() - primerDia), (int) (cierre.hasta().toEpochDay() - primerDia));
+        }
+        this.global = globalCompilado;
+    }
+
+    // Bitmap of the scope for this hour mask, created on first use
+    private long[] bitmap(Ambito ambito, int mascaraHoras) {
+        for (int k = 0; k < ambito.mascaras.length; k++) {
+            if (ambito.mascaras[k] == mascaraHoras) {
+                return ambito.dias[k];
+            }
+        }
+        int k = ambito.mascaras.length;
+        ambito.mascaras = Arrays.copyOf(ambito.mascaras, k + 1);
+        ambito.dias = Arrays.copyOf(ambito.dias, k + 1);
+        ambito.mascaras[k] = mascaraHoras;
+        ambito.dias[k] = new long[(numeroDias + 63) >>> 6];
+        return ambito.dias[k];
+    }
+
+    // Sets bits [desde, hasta]: whole words at once, partial masks only at both ends
+    private static void marcar(long[] bits, int desde, int hasta) {
+        int primeraPalabra = desde >>> 6;
+        int ultimaPalabra = hasta >>> 6;
+        long mascaraInicio = -1L << desde;          // Shift counts are taken mod 64
+        long mascaraFin = -1L >>> (63 - (hasta & 63));
+        if (primeraPalabra == ultimaPalabra) {
+            bits[primeraPalabra] |= mascaraInicio & mascaraFin;
+            return;
+        }
+        bits[primeraPalabra] |= mascaraInicio;
+        Arrays.fill(bits, primeraPalabra + 1, ultimaPalabra, -1L);
+        bits[ultimaPalabra] |= mascaraFin;
+    }
+
+    /**
+     * Máscara de horas cerradas en la sala ese día (bit h = franja h:00-h+1:00), sumando las
+     * reglas de la sala y las de todas las salas.
+     */
+    public int getHorasCerradas(String sala, long diaEpoch) {
+        long indice = diaEpoch - primerDia;
+        if (indice < 0 || indice >= numeroDias) {
+            return 0;
+        }
+        return horasCerradas(global, (int) indice) | horasCerradas(porSala.get(sala), (int) indice);
+    }
+
+    public int getHorasCerradas(String sala, LocalDate fecha) {
+        return getHorasCerradas(sala, fecha.toEpochDay());
+    }
+
+    private static int horasCerradas(Ambito ambito, int indice) {
+        if (ambito == null) {
+            return 0;
+        }
+        int palabra = indice >>> 6;
+        long bit = 1L << indice;
+        int horas = 0;
+        for (int k = 0; k < ambito.mascaras.length; k++) {
+            if ((ambito.dias[k][palabra] & bit) != 0) {
+                horas |= ambito.mascaras[k];
+            }
+        }
+        return horas;
+    }
+
+    /**
+     * Indica si alguna regla afecta a la sala; si no, se puede evitar consultar el calendario.
+     */
+    public boolean tieneCierres(String sala) {
+        return global != null || porSala.containsKey(sala);
+    }
+
+    public List<Cierre> getCierres() {
+        return cierres;
+    }
+
+    /**
+     * Reglas que afectan a la sala: las suyas y las de todas las salas, en el orden del archivo.
+     */
+    public List<Cierre> getCierres(String sala) {
+        return cierres.stream().filter(c -> TODAS.equals(c.sala()) || c.sala().equals(sala)).toList();
+    }
+
+    @JsonIgnore
+    public boolean isVacio() {
+        return cierres.isEmpty();
+    }
+}
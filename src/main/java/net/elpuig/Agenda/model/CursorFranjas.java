@@ -0,0 +1,160 @@
+package net.elpuig.Agenda.model;
+
+import java.time.LocalDate;
+
+/**
+ * Recorre las franjas de una reserva día a día sin crear objetos: en cada paso expone el
+ * día (epoch day) y la máscara de horas ocupadas (bit h = franja h:00-h+1:00).
+ * Salta directamente al siguiente día de la semana incluido usando la máscara de días,
+ * y se puede recortar a una ventana de fechas (por ejemplo, el mes procesado).
+ *
+ * Uso típico, reutilizando el mismo cursor para muchas reservas:
+ * <pre>
+ * cursor.reiniciar(reserva, inicioMes, finMes);
+ * while (cursor.siguiente()) {
+ *     long dia = cursor.getDiaEpoch();
+ *     int horas = cursor.getMascaraHoras();
+ * }
+ * </pre>
+ */
+public final class CursorFranjas {
+
+    /** Todas las horas del día (bits 0 a 23). */
+    public static final int DIA_COMPLETO = (1 << 24) - 1;
+
+    // Slot labels by hour, shared by the conflict index, incidencias and the view model
+    private static final String[] FRANJAS = new String[24];
+
+    static {
+        for (int h = 0; h < 24; h++) {
+            FRANJAS[h] = String.format("%02d:00-%02d:00", h, h + 1);
+        }
+    }
+
+    private long dia;          // Next candidate day (epoch day)
+    private long ultimoDia;    // Last day of the window, inclusive
+    private int diaSemana;     // Day of week of 'dia', 0 = Monday
+    private int mascaraDias;   // Bit 0 = Monday ... bit 6 = Sunday
+    private int mascaraHoras;
+    private long diaActual;
+
+    /**
+     * Prepara el cursor para recorrer toda la reserva.
+     */
+    public CursorFranjas reiniciar(Reserva reserva) {
+        return reiniciar(reserva.getFechaInicio().toEpochDay(), reserva.getFechaFin().toEpochDay(),
+                reserva.getMascaraDias(), reserva.getMascaraHoras());
+    }
+
+    /**
+     * Prepara el cursor para recorrer la reserva recortada a [desde, hasta]; los días fuera
+     * de la ventana no se visitan.
+     */
+    public CursorFranjas reiniciar(Reserva reserva, LocalDate desde, LocalDate hasta) {
+        return reiniciar(Math.max(reserva.getFechaInicio().toEpochDay(), desde.toEpochDay()),
+                Math.min(reserva.getFechaFin().toEpochDay(), hasta.toEpochDay()),
+                reserva.getMascaraDias(), reserva.getMascaraHoras());
+    }
+
+    public CursorFranjas reiniciar(long primerDia, long ultimoDia, int mascaraDias, int mascaraHoras) {
+        this.dia = primerDia;
+        this.ultimoDia = ultimoDia;
+        this.diaSemana = diaSemana(primerDia);
+        this.mascaraDias = mascaraDias & 0x7F;
+        this.mascaraHoras = mascaraHoras;
+        return this;
+    }
+
+    /**
+     * Avanza al siguiente día incluido de la reserva.
+     *
+     * @return false cuando no quedan días (o la reserva no ocupa ninguna hora).
+     */
+    public boolean siguiente() {
+        if (mascaraDias == 0 || mascaraHoras == 0 || dia > ultimoDia) {
+            return false;
+        }
+        // Rotate the day mask so that bit 0 is the current weekday; the trailing zeros are
+        // the number of days to skip until the next included weekday
+        int rotada = ((mascaraDias >>> diaSemana) | (mascaraDias << (7 - diaSemana))) & 0x7F;
+        int salto = Integer.numberOfTrailingZeros(rotada);
+        long candidato = dia + salto;
+        if (candidato > ultimoDia) {
+            dia = candidato;
+            return false;
+        }
+        diaActual = candidato;
+        dia = candidato + 1;
+        diaSemana = (diaSemana + salto + 1) % 7;
+        return true;
+    }
+
+    public long getDiaEpoch() {
+        return diaActual;
+    }
+
+    public LocalDate getFecha() {
+        return LocalDate.ofEpochDay(diaActual);
+    }
+
+    public int getMascaraHoras() {
+        return mascaraHoras;
+    }
+
+    /**
+     * Día de la semana de un epoch day, 0 = lunes. El 01/01/1970 (día 0) fue jueves.
+     */
+    public static int diaSemana(long diaEpoch) {
+        return (int) Math.floorMod(diaEpoch + 3, 7L);
+    }
+
+    /**
+     * Etiqueta de la franja de una hora, e.g. 8 -> "08:00-09:00".
+     */
+    public static String getFranja(int hora) {
+        return FRANJAS[hora];
+    }
+
+    /**
+     * Convierte los códigos de día (L, M, C, J, V, S y G o D para el domingo) en una máscara
+     * con el bit 0 para el lunes. Los caracteres desconocidos se ignoran.
+     */
+    public static int mascaraDias(String diasSemana) {
+        int mascara = 0;
+        for (int i = 0; i < diasSemana.length(); i++) {
+            switch (diasSemana.charAt(i)) {
+                case 'L' -> mascara |= 1;
+                case 'M' -> mascara |= 1 << 1;
+                case 'C' -> mascara |= 1 << 2;
+                case 'J' -> mascara |= 1 << 3;
+                case 'V' -> mascara |= 1 << 4;
+                case 'S' -> mascara |= 1 << 5;
+                case 'G', 'D' -> mascara |= 1 << 6; // 'G' (Diumenge) and 'D' (Domingo) are both Sunday
+                default -> { }
+            }
+        }
+        return mascara;
+    }
+
+    /**
+     * Convierte los horarios ("08-10_14-16") en una máscara de horas.
+     *
+     * @throws NumberFormatException Si algún rango no tiene el formato HH-HH o está fuera de 00-24.
+     */
+    public static int mascaraHoras(String horarios) {
+        int mascara = 0;
+        for (String horario : horarios.split("_")) {
+            String[] partes = horario.split("-");
+            if (partes.length != 2) {
+                throw new NumberFormatException("Rango horario inválido: " + horario);
+            }
+            int inicio = Integer.parseInt(partes[0]);
+            int fin = Integer.parseInt(partes[1]);
+            if (inicio < 0 || fin > 24 || inicio >= fin) {
+                throw new NumberFormatException("Rango horario inválido: " + horario);
+            }
+            mascara |= ((1 << fin) - 1) & ~((1 << inicio) - 1);
+        }
+        return mascara;
+    }
+}
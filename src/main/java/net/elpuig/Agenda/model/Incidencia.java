@@ -0,0 +1,116 @@
+package net.elpuig.Agenda.model;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Incidencia estructurada generada durante el procesamiento de reservas.
+ * Además del texto legible (mensaje) conserva los campos por separado para poder
+ * exponerla como JSON y saber qué reserva aceptada bloqueó cada franja.
+ */
+public class Incidencia {
+    public static final String TIPO_CONFLICTO = "CONFLICTO";
+    public static final String TIPO_FORMATO = "FORMATO";
+    public static final String TIPO_CIERRE = "CIERRE";
+
+    private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("dd/MM/yyyy");
+
+    private String tipo;
+    private int reservaId;          // Identificador de la reserva rechazada (línea en peticiones.txt)
+    private String actividad;
+    private String sala;
+    private LocalDate fecha;
+    private String franja;          // e.g., "08:00-09:00" (null en las de formato)
+    private Integer propietarioId;  // Reserva aceptada que ocupa la franja (null si no aplica)
+    private String propietarioActividad;
+    private String mensaje;
+
+    @JsonCreator
+    public Incidencia(String tipo, int reservaId, String actividad, String sala, LocalDate fecha, String franja,
+                      Integer propietarioId, String propietarioActividad, String mensaje) {
+        this.tipo = tipo;
+        this.reservaId = reservaId;
+        this.actividad = actividad;
+        this.sala = sala;
+        this.fecha = fecha;
+        this.franja = franja;
+        this.propietarioId = propietarioId;
+        this.propietarioActividad = propietarioActividad;
+        this.mensaje = mensaje;
+    }
+
+    /**
+     * Crea la incidencia de una franja ya ocupada por una reserva aceptada previamente.
+     */
+    public static Incidencia conflicto(Reserva reserva, LocalDate fecha, String franja, Reserva propietario) {
+        String mensaje = "Conflicto detectado para '" + reserva.getNombreActividad() + "' en Sala '" + reserva.getSala()
+                + "' el " + fecha.format(DATE_FORMATTER) + " a las " + franja
+                + ": ocupada por '" + propietario.getNombreActividad() + "' (reserva #" + propietario.getId() + ").";
+        return new Incidencia(TIPO_CONFLICTO, reserva.getId(), reserva.getNombreActividad(), reserva.getSala(),
+                fecha, franja, propietario.getId(), propietario.getNombreActividad(), mensaje);
+    }
+
+    /**
+     * Crea la incidencia de una franja cerrada por el calendario de cierres.
+     */
+    public static Incidencia cierre(Reserva reserva, LocalDate fecha, String franja) {
+        String mensaje = "Conflicto detectado para '" + reserva.getNombreActividad() + "' en Sala '" + reserva.getSala()
+                + "' el " + fecha.format(DATE_FORMATTER) + " a las " + franja + ": sala cerrada según el calendario de cierres.";
+        return new Incidencia(TIPO_CIERRE, reserva.getId(), reserva.getNombreActividad(), reserva.getSala(),
+                fecha, franja, null, null, mensaje);
+    }
+
+    /**
+     * Crea la incidencia de un rango horario que no se ha podido interpretar. No tiene franja:
+     * el texto inválido solo aparece en el mensaje.
+     */
+    public static Incidencia formato(Reserva reserva, String horario) {
+        String mensaje = "Error de formato de hora en reserva '" + reserva.getNombreActividad() + "': " + horario;
+        return new Incidencia(TIPO_FORMATO, reserva.getId(), reserva.getNombreActividad(), reserva.getSala(),
+                null, null, null, null, mensaje);
+    }
+
+    // Getters
+    public String getTipo() {
+        return tipo;
+    }
+
+    public int getReservaId() {
+        return reservaId;
+    }
+
+    public String getActividad() {
+        return actividad;
+    }
+
+    public String getSala() {
+        return sala;
+    }
+
+    public LocalDate getFecha() {
+        return fecha;
+    }
+
+    public String getFranja() {
+        return franja;
+    }
+
+    public Integer getPropietarioId() {
+        return propietarioId;
+    }
+
+    public String getPropietarioActividad() {
+        return propietarioActividad;
+    }
+
+    public String getMensaje() {
+        return mensaje;
+    }
+
+    @Override
+    public String toString() {
+        return mensaje;
+    }
+}
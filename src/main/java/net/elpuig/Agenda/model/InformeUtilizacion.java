@@ -0,0 +1,45 @@
+package net.elpuig.Agenda.model;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Informe de utilización de todas las salas de un resultado, devuelto por /analitica.
+ */
+public class InformeUtilizacion {
+    private final LocalDate desde;
+    private final LocalDate hasta;
+    private final List<AnaliticaSala> salas;          // Orden alfabético
+    private final List<String> salasMenosUtilizadas;  // De menor a mayor utilización
+    private final long duracionMs;
+
+    public InformeUtilizacion(LocalDate desde, LocalDate hasta, List<AnaliticaSala> salas,
+                              List<String> salasMenosUtilizadas, long duracionMs) {
+        this.desde = desde;
+        this.hasta = hasta;
+        this.salas = salas;
+        this.salasMenosUtilizadas = salasMenosUtilizadas;
+        this.duracionMs = duracionMs;
+    }
+
+    // Getters
+    public LocalDate getDesde() {
+        return desde;
+    }
+
+    public LocalDate getHasta() {
+        return hasta;
+    }
+
+    public List<AnaliticaSala> getSalas() {
+        return salas;
+    }
+
+    public List<String> getSalasMenosUtilizadas() {
+        return salasMenosUtilizadas;
+    }
+
+    public long getDuracionMs() {
+        return duracionMs;
+    }
+}
@@ -0,0 +1,70 @@
+package net.elpuig.Agenda.model;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Progreso de un procesamiento. Lo actualiza el hilo que procesa y lo leen
+ * las peticiones de consulta de estado, por eso todos los campos son atómicos o volátiles.
+ */
+public class ProgresoProcesamiento {
+
+    public enum Etapa {
+        EN_COLA,
+        CARGANDO,
+        RESOLVIENDO,
+        COMPLETADO,
+        ERROR
+    }
+
+    private volatile Etapa etapa = Etapa.EN_COLA;
+    private final AtomicLong lineasLeidas = new AtomicLong();
+    private final AtomicLong reservasCargadas = new AtomicLong();
+    private final AtomicLong reservasResueltas = new AtomicLong();
+    private volatile String error;
+
+    public void lineaLeida() {
+        lineasLeidas.incrementAndGet();
+    }
+
+    public void setReservasCargadas(long total) {
+        reservasCargadas.set(total);
+    }
+
+    public void reservaResuelta() {
+        reservasResueltas.incrementAndGet();
+    }
+
+    public void fallar(String error) {
+        this.error = error;
+        this.etapa = Etapa.ERROR;
+    }
+
+    // Getters y setters
+    public Etapa getEtapa() {
+        return etapa;
+    }
+
+    public void setEtapa(Etapa etapa) {
+        this.etapa = etapa;
+    }
+
+    public long getLineasLeidas() {
+        return lineasLeidas.get();
+    }
+
+    public long getReservasCargadas() {
+        return reservasCargadas.get();
+    }
+
+    public long getReservasResueltas() {
+        return reservasResueltas.get();
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public boolean isTerminado() {
+        return etapa == Etapa.COMPLETADO || etapa == Etapa.ERROR;
+    }
+}
@@ -1,9 +1,12 @@
 package net.elpuig.Agenda.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
 import java.time.LocalDate;
 import java.util.Objects;
 
 public class Reserva {
+    private int id;             // Número de línea en peticiones.txt (0 si no se conoce)
     private String nombreActividad;
     private String sala;
     private LocalDate fechaInicio;
@@ -11,6 +14,14 @@ public class Reserva {
     private String diasSemana; // e.g., "LMCJVSG"
     private String horarios;    // e.g., "08-10_14-16"
 
+    // Bitmaps derived from diasSemana and horarios, computed on first use (see CursorFranjas)
+    private int mascaraDias = -1;
+    private int mascaraHoras = -1;
+
+    // For JSON deserialization (AgendaResultStore)
+    public Reserva() {
+    }
+
     public Reserva(String nombreActividad, String sala, LocalDate fechaInicio, LocalDate fechaFin, String diasSemana, String horarios) {
         this.nombreActividad = nombreActividad;
         this.sala = sala;
@@ -21,6 +32,10 @@ public class Reserva {
     }
 
     // Getters
+    public int getId() {
+        return id;
+    }
+
     public String getNombreActividad() {
         return nombreActividad;
     }
@@ -45,7 +60,35 @@ public class Reserva {
         return horarios;
     }
 
+    /**
+     * Días de la semana como máscara (bit 0 = lunes ... bit 6 = domingo).
+     */
+    @JsonIgnore
+    public int getMascaraDias() {
+        if (mascaraDias < 0) {
+            mascaraDias = CursorFranjas.mascaraDias(diasSemana);
+        }
+        return mascaraDias;
+    }
+
+    /**
+     * Horas ocupadas cada día como máscara (bit h = franja h:00-h+1:00).
+     *
+     * @throws NumberFormatException Si los horarios no tienen el formato HH-HH_HH-HH.
+     */
+    @JsonIgnore
+    public int getMascaraHoras() {
+        if (mascaraHoras < 0) {
+            mascaraHoras = CursorFranjas.mascaraHoras(horarios);
+        }
+        return mascaraHoras;
+    }
+
     // Setters (if needed, though immutable objects are often preferred for data)
+    public void setId(int id) {
+        this.id = id;
+    }
+
     public void setNombreActividad(String nombreActividad) {
         this.nombreActividad = nombreActividad;
     }
@@ -64,10 +107,12 @@ public class Reserva {
 
     public void setDiasSemana(String diasSemana) {
         this.diasSemana = diasSemana;
+        this.mascaraDias = -1;
     }
 
     public void setHorarios(String horarios) {
         this.horarios = horarios;
+        this.mascaraHoras = -1;
     }
 
     @Override
@@ -0,0 +1,175 @@
+package net.elpuig.Agenda.model;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.*;
+
+/**
+ * Copia inmutable del resultado de un procesamiento (config.txt + peticiones.txt).
+ * Permite mostrar la agenda de un trabajo concreto aunque DataLoader y AgendaProcessor
+ * ya estén procesando otros archivos.
+ * Se guarda como JSON en los AgendaResultStore; las huellas no se guardan, se recalculan al leerlo.
+ */
+public class ResultadoAgenda {
+    private final String id;
+    private final Instant fechaProcesamiento;
+    private final YearMonth mesProcesar;
+    private final String idiomaSalida;
+    private final Map<String, String> traducciones;
+    private final List<Reserva> reservasValidas;
+    private final List<String> incidencias;
+    private final List<Incidencia> incidenciasDetalladas;
+    private final List<String> incidenciasCarga;
+    private final CalendarioCierres calendario;
+
+    // Content hashes used as HTTP validators (ETag): whole result, each room and the incidencias
+    // (resolution and load ones, both shown on the page)
+    private final String huella;
+    private final Map<String, String> huellasPorSala;
+    private final String huellaIncidencias;
+
+    @JsonCreator
+    public ResultadoAgenda(String id, Instant fechaProcesamiento, YearMonth mesProcesar, String idiomaSalida,
+                           Map<String, String> traducciones, List<Reserva> reservasValidas, List<String> incidencias,
+                           List<Incidencia> incidenciasDetalladas, List<String> incidenciasCarga,
+                           CalendarioCierres calendario) {
+        this.id = id;
+        this.fechaProcesamiento = fechaProcesamiento;
+        this.mesProcesar = mesProcesar;
+        this.idiomaSalida = idiomaSalida;
+        this.traducciones = Map.copyOf(traducciones);
+        this.reservasValidas = List.copyOf(reservasValidas);
+        this.incidencias = List.copyOf(incidencias);
+        this.incidenciasDetalladas = List.copyOf(incidenciasDetalladas);
+        this.incidenciasCarga = List.copyOf(incidenciasCarga);
+        this.calendario = calendario != null ? calendario : CalendarioCierres.VACIO; // Results stored before calendars existed
+
+        this.huellasPorSala = calcularHuellasPorSala();
+        List<String> textoIncidencias = new ArrayList<>(this.incidencias);
+        this.incidenciasCarga.forEach(incidencia -> textoIncidencias.add("carga|" + incidencia));
+        this.huellaIncidencias = calcularHuella(textoIncidencias);
+        List<String> partes = new ArrayList<>(List.of(mesProcesar.toString(), idiomaSalida));
+        huellasPorSala.forEach((sala, huellaSala) -> partes.add(sala + "=" + huellaSala));
+        partes.add(huellaIncidencias);
+        this.huella = calcularHuella(partes);
+    }
+
+    /**
+     * Huella de cada sala: mes, idioma de salida, las reservas aceptadas de la sala con
+     * alguna franja en el mes procesado, en orden de aceptación, y los cierres que le afectan.
+     * Dos resultados con la misma huella para una sala pintan exactamente las mismas tablas.
+     *
+     * Las salas son las que tienen alguna reserva en el mes y las que nombra un cierre propio
+     * que se solapa con el mes: una sala cerrada todo el mes no puede tener reservas, pero se
+     * sigue mostrando con sus franjas cerradas.
+     */
+    private Map<String, String> calcularHuellasPorSala() {
+        LocalDate inicioMes = mesProcesar.atDay(1);
+        LocalDate finMes = mesProcesar.atEndOfMonth();
+        Map<String, List<String>> contenidoPorSala = new TreeMap<>();
+        CursorFranjas cursor = new CursorFranjas();
+        for (Reserva reserva : reservasValidas) {
+            if (!cursor.reiniciar(reserva, inicioMes, finMes).siguiente()) {
+                continue; // No slot in this month: does not show up in the agenda
+            }
+            contenidoPorSala.computeIfAbsent(reserva.getSala(), k -> new ArrayList<>(List.of(mesProcesar.toString(), idiomaSalida)))
+                    .add(reserva.getNombreActividad() + "|" + reserva.getFechaInicio() + "|" + reserva.getFechaFin()
+                            + "|" + reserva.getDiasSemana() + "|" + reserva.getHorarios());
+        }
+        for (CalendarioCierres.Cierre cierre : calendario.getCierres()) {
+            if (!CalendarioCierres.TODAS.equals(cierre.sala())
+                    && !cierre.desde().isAfter(finMes) && !cierre.hasta().isBefore(inicioMes)) {
+                contenidoPorSala.computeIfAbsent(cierre.sala(), k -> new ArrayList<>(List.of(mesProcesar.toString(), idiomaSalida)));
+            }
+        }
+        contenidoPorSala.forEach((sala, contenido) -> calendario.getCierres(sala).forEach(cierre ->
+                contenido.add("cierre|" + cierre.sala() + "|" + cierre.desde() + "|" + cierre.hasta() + "|" + cierre.horarios())));
+        Map<String, String> huellas = new TreeMap<>();
+        contenidoPorSala.forEach((sala, contenido) -> huellas.put(sala, calcularHuella(contenido)));
+        return Collections.unmodifiableMap(huellas);
+    }
+
+    private static String calcularHuella(List<String> partes) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (String parte : partes) {
+                digest.update(parte.getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) 0); // Separator, so ("ab", "c") and ("a", "bc") differ
+            }
+            return HexFormat.of().formatHex(digest.digest(), 0, 16);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 no disponible", e);
+        }
+    }
+
+    // Getters
+    public String getId() {
+        return id;
+    }
+
+    public Instant getFechaProcesamiento() {
+        return fechaProcesamiento;
+    }
+
+    public YearMonth getMesProcesar() {
+        return mesProcesar;
+    }
+
+    public String getIdiomaSalida() {
+        return idiomaSalida;
+    }
+
+    public Map<String, String> getTraducciones() {
+        return traducciones;
+    }
+
+    public List<Reserva> getReservasValidas() {
+        return reservasValidas;
+    }
+
+    public List<String> getIncidencias() {
+        return incidencias;
+    }
+
+    public List<Incidencia> getIncidenciasDetalladas() {
+        return incidenciasDetalladas;
+    }
+
+    public List<String> getIncidenciasCarga() {
+        return incidenciasCarga;
+    }
+
+    public CalendarioCierres getCalendario() {
+        return calendario;
+    }
+
+    @JsonIgnore
+    public String getHuella() {
+        return huella;
+    }
+
+    @JsonIgnore
+    public Map<String, String> getHuellasPorSala() {
+        return huellasPorSala;
+    }
+
+    @JsonIgnore
+    public String getHuellaIncidencias() {
+        return huellaIncidencias;
+    }
+
+    /**
+     * Huella de lo que muestra /agenda filtrada por una sala: sus tablas más las incidencias.
+     */
+    public String getHuellaSala(String sala) {
+        return calcularHuella(List.of(mesProcesar.toString(), idiomaSalida, sala,
+                huellasPorSala.getOrDefault(sala, ""), huellaIncidencias));
+    }
+}
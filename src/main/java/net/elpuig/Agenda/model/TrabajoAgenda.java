@@ -0,0 +1,30 @@
+package net.elpuig.Agenda.model;
+
+import java.time.Instant;
+
+/**
+ * Procesamiento lanzado en segundo plano desde /procesar. Al terminar, su resultado se
+ * guarda en el AgendaResultStore con el mismo id.
+ */
+public class TrabajoAgenda {
+    private final String id;
+    private final Instant fechaCreacion = Instant.now();
+    private final ProgresoProcesamiento progreso = new ProgresoProcesamiento();
+
+    public TrabajoAgenda(String id) {
+        this.id = id;
+    }
+
+    // Getters y setters
+    public String getId() {
+        return id;
+    }
+
+    public Instant getFechaCreacion() {
+        return fechaCreacion;
+    }
+
+    public ProgresoProcesamiento getProgreso() {
+        return progreso;
+    }
+}
@@ -0,0 +1,26 @@
+package net.elpuig.Agenda.service;
+
+import net.elpuig.Agenda.model.ResultadoAgenda;
+
+/**
+ * Almacén de resultados procesados. Un resultado se escribe una vez, al terminar
+ * /procesar, y lo puede leer cualquier nodo que comparta el almacén. La implementación se
+ * elige con {@code agenda.store.tipo} ("memoria" o "disco").
+ */
+public interface AgendaResultStore {
+
+    /**
+     * Guarda el resultado y lo marca como el último procesado.
+     */
+    void guardar(ResultadoAgenda resultado);
+
+    /**
+     * @return El resultado con ese id, o null si no existe.
+     */
+    ResultadoAgenda obtener(String id);
+
+    /**
+     * @return El último resultado guardado, o null si aún no hay ninguno.
+     */
+    ResultadoAgenda obtenerUltimo();
+}
@@ -0,0 +1,171 @@
+package net.elpuig.Agenda.service;
+
+import net.elpuig.Agenda.model.AnaliticaSala;
+import net.elpuig.Agenda.model.CalendarioCierres;
+import net.elpuig.Agenda.model.CursorFranjas;
+import net.elpuig.Agenda.model.Incidencia;
+import net.elpuig.Agenda.model.InformeUtilizacion;
+import net.elpuig.Agenda.model.Reserva;
+import net.elpuig.Agenda.model.ResultadoAgenda;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.util.*;
+
+/**
+ * Estadísticas de utilización por sala a partir de las reservas aceptadas y las incidencias
+ * de un resultado. Cada sala se reduce a una máscara de horas por día de la ventana y todo
+ * se agrega con recuentos de bits; las salas se calculan en paralelo.
+ */
+@Service
+public class AnaliticaService {
+
+    // Hour bands reported in AnaliticaSala.utilizacionPorFranja
+    private static final String[] FRANJAS = {"00-08", "08-14", "14-20", "20-24"};
+    private static final int[] MASCARAS_FRANJA = new int[FRANJAS.length];
+
+    static {
+        for (int i = 0; i < FRANJAS.length; i++) {
+            MASCARAS_FRANJA[i] = CursorFranjas.mascaraHoras(FRANJAS[i]);
+        }
+    }
+
+    private static final int HORAS_PICO = 3;
+
+    /**
+     * Calcula la utilización de todas las salas con reservas o incidencias en el resultado.
+     *
+     * @param top Número de salas menos utilizadas a destacar.
+     */
+    public InformeUtilizacion calcular(ResultadoAgenda resultado, LocalDate desde, LocalDate hasta, int top) {
+        long inicio = System.nanoTime();
+
+        Map<String, List<Reserva>> reservasPorSala = new HashMap<>();
+        for (Reserva reserva : resultado.getReservasValidas()) {
+            reservasPorSala.computeIfAbsent(reserva.getSala(), k -> new ArrayList<>()).add(reserva);
+        }
+        Map<String, Set<Integer>> rechazadasPorSala = new HashMap<>();
+        for (Incidencia incidencia : resultado.getIncidenciasDetalladas()) {
+            // Rejections outside the window do not count; format errors have no date and always do
+            LocalDate fecha = incidencia.getFecha();
+            if (fecha != null && (fecha.isBefore(desde) || fecha.isAfter(hasta))) {
+                continue;
+            }
+            rechazadasPorSala.computeIfAbsent(incidencia.getSala(), k -> new HashSet<>()).add(incidencia.getReservaId());
+        }
+        Set<String> salas = new HashSet<>(reservasPorSala.keySet());
+        salas.addAll(rechazadasPorSala.keySet());
+
+        List<AnaliticaSala> analiticas = salas.parallelStream()
+                .map(sala -> calcularSala(sala, reservasPorSala.getOrDefault(sala, List.of()),
+                        rechazadasPorSala.getOrDefault(sala, Set.of()), resultado.getCalendario(), desde, hasta))
+                .sorted(Comparator.comparing(AnaliticaSala::getSala))
+                .toList();
+
+        List<String> menosUtilizadas = analiticas.stream()
+                .sorted(Comparator.comparingDouble(AnaliticaSala::getUtilizacion).thenComparing(AnaliticaSala::getSala))
+                .limit(top)
+                .map(AnaliticaSala::getSala)
+                .toList();
+
+        return new InformeUtilizacion(desde, hasta, analiticas, menosUtilizadas, (System.nanoTime() - inicio) / 1_000_000);
+    }
+
+    private AnaliticaSala calcularSala(String sala, List<Reserva> reservas, Set<Integer> rechazadas,
+                                       CalendarioCierres calendario, LocalDate desde, LocalDate hasta) {
+        long primerDia = desde.toEpochDay();
+        int dias = (int) (hasta.toEpochDay() - primerDia + 1);
+
+        // One hour mask per day of the window
+        int[] ocupacion = new int[dias];
+        CursorFranjas cursor = new CursorFranjas();
+        Set<Integer> aceptadas = new HashSet<>();
+        for (Reserva reserva : reservas) {
+            cursor.reiniciar(reserva, desde, hasta);
+            boolean enVentana = false;
+            while (cursor.siguiente()) {
+                ocupacion[(int) (cursor.getDiaEpoch() - primerDia)] |= cursor.getMascaraHoras();
+                enVentana = true;
+            }
+            if (enVentana) {
+                aceptadas.add(reserva.getId()); // Only requests with a slot in the window count for the rejection rate
+            }
+        }
+
+        // Hours closed by the calendar are not available, so they do not count as capacity in
+        // any of the rates; hours booked before the closure was added still do
+        int[] cerradas = new int[dias];
+        if (calendario.tieneCierres(sala)) {
+            for (int d = 0; d < dias; d++) {
+                cerradas[d] = calendario.getHorasCerradas(sala, primerDia + d) & ~ocupacion[d];
+            }
+        }
+
+        long ocupadas = 0;
+        long cerradasTotal = 0;
+        int[] diasPorDiaSemana = new int[7];
+        long[] ocupadasPorDiaSemana = new long[7];
+        long[] cerradasPorDiaSemana = new long[7];
+        long[] ocupadasPorFranja = new long[FRANJAS.length];
+        long[] cerradasPorFranja = new long[FRANJAS.length];
+        long[][] ocupadasPorDiaHora = new long[7][24];
+        long[][] cerradasPorDiaHora = new long[7][24];
+        long[] ocupadasPorHora = new long[24];
+        int diaSemana = CursorFranjas.diaSemana(primerDia);
+        for (int d = 0; d < dias; d++) {
+            int mascara = ocupacion[d];
+            int horas = Integer.bitCount(mascara);
+            ocupadas += horas;
+            diasPorDiaSemana[diaSemana]++;
+            ocupadasPorDiaSemana[diaSemana] += horas;
+            if (mascara != 0) {
+                for (int f = 0; f < FRANJAS.length; f++) {
+                    ocupadasPorFranja[f] += Integer.bitCount(mascara & MASCARAS_FRANJA[f]);
+                }
+                for (int pendientes = mascara; pendientes != 0; pendientes &= pendientes - 1) {
+                    int hora = Integer.numberOfTrailingZeros(pendientes);
+                    ocupadasPorDiaHora[diaSemana][hora]++;
+                    ocupadasPorHora[hora]++;
+                }
+            }
+            int cerrada = cerradas[d];
+            if (cerrada != 0) {
+                cerradasTotal += Integer.bitCount(cerrada);
+                cerradasPorDiaSemana[diaSemana] += Integer.bitCount(cerrada);
+                for (int f = 0; f < FRANJAS.length; f++) {
+                    cerradasPorFranja[f] += Integer.bitCount(cerrada & MASCARAS_FRANJA[f]);
+                }
+                for (int pendientes = cerrada; pendientes != 0; pendientes &= pendientes - 1) {
+                    cerradasPorDiaHora[diaSemana][Integer.numberOfTrailingZeros(pendientes)]++;
+                }
+            }
+            diaSemana = diaSemana == 6 ? 0 : diaSemana + 1;
+        }
+
+        double[] porDiaSemana = new double[7];
+        double[][] matriz = new double[7][24];
+        for (int d = 0; d < 7; d++) {
+            porDiaSemana[d] = AnaliticaSala.tasa(ocupadasPorDiaSemana[d], diasPorDiaSemana[d] * 24L - cerradasPorDiaSemana[d]);
+            for (int h = 0; h < 24; h++) {
+                matriz[d][h] = AnaliticaSala.tasa(ocupadasPorDiaHora[d][h], diasPorDiaSemana[d] - cerradasPorDiaHora[d][h]);
+            }
+        }
+        Map<String, Double> porFranja = new LinkedHashMap<>();
+        for (int f = 0; f < FRANJAS.length; f++) {
+            porFranja.put(FRANJAS[f], AnaliticaSala.tasa(ocupadasPorFranja[f],
+                    (long) dias * Integer.bitCount(MASCARAS_FRANJA[f]) - cerradasPorFranja[f]));
+        }
+        List<Integer> horasPico = new ArrayList<>();
+        for (int h = 0; h < 24; h++) {
+            if (ocupadasPorHora[h] > 0) {
+                horasPico.add(h);
+            }
+        }
+        horasPico.sort((a, b) -> Long.compare(ocupadasPorHora[b], ocupadasPorHora[a]));
+
+        Set<Integer> solicitadas = new HashSet<>(aceptadas);
+        solicitadas.addAll(rechazadas);
+        return new AnaliticaSala(sala, ocupadas, (long) dias * 24 - cerradasTotal, porDiaSemana, porFranja, matriz,
+                horasPico.subList(0, Math.min(HORAS_PICO, horasPico.size())), solicitadas.size(), rechazadas.size());
+    }
+}
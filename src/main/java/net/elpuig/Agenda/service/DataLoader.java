@@ -1,13 +1,20 @@
 package net.elpuig.Agenda.service;
 
+import net.elpuig.Agenda.model.CalendarioCierres;
+import net.elpuig.Agenda.model.Incidencia;
+import net.elpuig.Agenda.model.ProgresoProcesamiento;
 import net.elpuig.Agenda.model.Reserva;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.io.BufferedReader;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
 import java.time.YearMonth;
 import java.time.format.DateTimeFormatter;
@@ -18,12 +25,20 @@ import java.util.*;
 public class DataLoader {
     private static final Logger logger = LoggerFactory.getLogger(DataLoader.class);
 
+    @Autowired
+    private IncidenciasLog incidenciasLog;
+
+    // Upper bound of each input once decompressed; see EntradaComprimida
+    @Value("${agenda.entrada.max-bytes:268435456}")
+    private long maxBytesEntrada = 268_435_456;
+
     private YearMonth mesProcesar;
     private String idiomaEntrada;
     private String idiomaSalida;
     private Map<String, String> traducciones = new HashMap<>(); // Traducciones para el idioma de SALIDA
     private List<Reserva> reservas = new ArrayList<>(); // Reservas válidas cargadas
     private List<String> incidenciasCarga = new ArrayList<>(); // Para incidencias durante la carga de archivos
+    private CalendarioCierres calendario = CalendarioCierres.VACIO; // Cierres de calendario.txt (opcional)
 
     // Mapa para traducir abreviaciones de días de entrada a códigos internos (LMCJVSGD)
     private static final Map<String, String> ABBREVIATION_MAP = new HashMap<>();
@@ -76,17 +91,31 @@ public class DataLoader {
         return Collections.unmodifiableList(incidenciasCarga); // Devolver una lista inmutable
     }
 
+    public CalendarioCierres getCalendario() {
+        return calendario;
+    }
+
     /**
      * Método principal para cargar los archivos de configuración y peticiones.
      * Recibe las traducciones precargadas para todos los idiomas.
      *
-     * @param configStream InputStream del archivo config.txt
-     * @param peticionesStream InputStream del archivo peticiones.txt
+     * @param configStream InputStream del archivo config.txt (texto plano, gzip o zip)
+     * @param peticionesStream InputStream del archivo peticiones.txt (texto plano, gzip o zip)
      * @param todosLosIdiomasTraducciones Mapa que contiene las traducciones para cada idioma (ej. "ENG" -> Map de traducciones)
      * @throws Exception Si ocurre un error durante la carga o validación.
      */
     public void cargarArchivos(InputStream configStream, InputStream peticionesStream,
                                Map<String, Map<String, String>> todosLosIdiomasTraducciones) throws Exception {
+        cargarArchivos(configStream, peticionesStream, todosLosIdiomasTraducciones, new ProgresoProcesamiento());
+    }
+
+    /**
+     * Igual que {@link #cargarArchivos(InputStream, InputStream, Map)}, informando de las
+     * líneas leídas de peticiones.txt en el progreso indicado.
+     */
+    public void cargarArchivos(InputStream configStream, InputStream peticionesStream,
+                               Map<String, Map<String, String>> todosLosIdiomasTraducciones,
+                               ProgresoProcesamiento progreso) throws Exception {
         logger.info("Iniciando carga de archivos...");
         limpiarEstadoAnterior(); // Limpiar datos de cargas previas
 
@@ -107,12 +136,12 @@ public class DataLoader {
 
 
         // 2. Cargar peticiones.txt
-        cargarPeticiones(peticionesStream);
+        cargarPeticiones(peticionesStream, progreso);
+        progreso.setReservasCargadas(reservas.size());
         logger.info("Peticiones cargadas. Total de reservas procesadas: {}", reservas.size() + incidenciasCarga.size());
         logger.info("Reservas válidas cargadas: {}", reservas.size());
         if (!incidenciasCarga.isEmpty()) {
-            logger.warn("Incidencias durante la carga de peticiones: {}", incidenciasCarga.size());
-            incidenciasCarga.forEach(incidencia -> logger.warn("  - {}", incidencia));
+            logger.warn("Incidencias durante la carga de peticiones: {} (detalle en el registro de incidencias)", incidenciasCarga.size());
         }
     }
 
@@ -120,9 +149,10 @@ public class DataLoader {
         mesProcesar = null;
         idiomaEntrada = null;
         idiomaSalida = null;
-        traducciones.clear();
+        traducciones = new HashMap<>(); // Not clear(): the map belongs to I18nService
         reservas.clear();
         incidenciasCarga.clear();
+        calendario = CalendarioCierres.VACIO;
         logger.debug("Estado de DataLoader limpiado.");
     }
 
@@ -130,7 +160,8 @@ public class DataLoader {
         if (configStream == null) {
             throw new IllegalArgumentException("InputStream para config.txt es nulo.");
         }
-        try (BufferedReader reader = new BufferedReader(new InputStreamReader(configStream, "UTF-8"))) {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                EntradaComprimida.abrir(configStream, "config.txt", maxBytesEntrada), StandardCharsets.UTF_8))) {
             String line;
             // Línea 1: Año y Mes
             if ((line = reader.readLine()) != null) {
@@ -167,31 +198,41 @@ public class DataLoader {
         }
     }
 
-    private void cargarPeticiones(InputStream peticionesStream) {
+    private void cargarPeticiones(InputStream peticionesStream, ProgresoProcesamiento progreso) throws IOException {
         if (peticionesStream == null) {
             incidenciasCarga.add("InputStream para peticiones.txt es nulo.");
             logger.error("InputStream para peticiones.txt es nulo.");
             return;
         }
-        try (BufferedReader reader = new BufferedReader(new InputStreamReader(peticionesStream, "UTF-8"))) {
+        // gzip/zip are inflated while reading, straight into the line parser
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                EntradaComprimida.abrir(peticionesStream, "peticiones.txt", maxBytesEntrada), StandardCharsets.UTF_8))) {
             String line;
             int lineNumber = 0;
             while ((line = reader.readLine()) != null) {
                 lineNumber++;
+                progreso.lineaLeida();
                 line = line.trim();
                 if (line.isEmpty() || line.startsWith("#")) {
                     continue; // Ignorar líneas vacías o comentarios
                 }
 
                 try {
-                    reservas.add(crearReservaDesdeLinea(line));
+                    Reserva reserva = crearReservaDesdeLinea(line);
+                    reserva.setId(lineNumber); // El número de línea identifica la reserva en las incidencias
+                    reservas.add(reserva);
                 } catch (Exception e) {
                     String incidencia = String.format("Error en línea %d de peticiones.txt ('%s'): %s", lineNumber, line, e.getMessage());
                     incidenciasCarga.add(incidencia);
-                    logger.error(incidencia); // Log del error completo
+                    // Queued for incidencies.log, the parse loop never waits on log I/O
+                    incidenciasLog.registrar(Incidencia.TIPO_FORMATO, "peticiones.txt", lineNumber, salaDeLinea(line), null, null,
+                            e.getMessage());
                 }
             }
             logger.debug("Peticiones de peticiones.txt procesadas.");
+        } catch (EntradaComprimida.EntradaDemasiadoGrandeException e) {
+            logger.error(e.getMessage());
+            throw e; // Unlike a bad line, a truncated file must not produce a partial agenda
         } catch (Exception e) {
             String incidencia = "Error al leer peticiones.txt: " + e.getMessage();
             incidenciasCarga.add(incidencia);
@@ -199,6 +240,87 @@ public class DataLoader {
         }
     }
 
+    /**
+     * Carga el calendario de cierres (opcional). Debe llamarse después de {@link #cargarArchivos},
+     * que reinicia el estado. Cada línea es una regla:
+     * <pre>
+     * Sala|* FechaInicio [FechaFin] [Horarios]
+     * * 25/12/2025                      (festivo en todas las salas, todo el día)
+     * Sala1 01/08/2025 31/08/2025       (Sala1 cerrada en agosto)
+     * * 01/03/2025 31/03/2025 20-24     (todas las salas cerradas de 20 a 24 en marzo)
+     * </pre>
+     * Las líneas inválidas se registran como incidencias de carga y se ignoran.
+     *
+     * @param calendarioStream InputStream del archivo calendario.txt (texto plano, gzip o zip)
+     * @throws IOException Si el archivo supera agenda.entrada.max-bytes una vez descomprimido
+     */
+    public void cargarCalendario(InputStream calendarioStream) throws IOException {
+        List<CalendarioCierres.Cierre> cierres = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                EntradaComprimida.abrir(calendarioStream, "calendario.txt", maxBytesEntrada), StandardCharsets.UTF_8))) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                try {
+                    cierres.add(crearCierreDesdeLinea(line));
+                } catch (Exception e) {
+                    String incidencia = String.format("Error en línea %d de calendario.txt ('%s'): %s", lineNumber, line, e.getMessage());
+                    incidenciasCarga.add(incidencia);
+                    incidenciasLog.registrar(Incidencia.TIPO_FORMATO, "calendario.txt", lineNumber, salaDeCierre(line), null, null,
+                            e.getMessage());
+                }
+            }
+        } catch (EntradaComprimida.EntradaDemasiadoGrandeException e) {
+            logger.error(e.getMessage());
+            throw e;
+        } catch (Exception e) {
+            String incidencia = "Error al leer calendario.txt: " + e.getMessage();
+            incidenciasCarga.add(incidencia);
+            logger.error(incidencia);
+        }
+        calendario = new CalendarioCierres(cierres);
+        logger.info("Calendario de cierres cargado: {} reglas", cierres.size());
+    }
+
+    private CalendarioCierres.Cierre crearCierreDesdeLinea(String linea) throws Exception {
+        String[] partes = linea.split(" ");
+        if (partes.length < 2 || partes.length > 4) {
+            throw new Exception("Formato de línea de cierre inválido. Se esperaba: Sala|* FechaInicio [FechaFin] [Horarios].");
+        }
+        LocalDate desde = parseFecha(partes[1]);
+        LocalDate hasta = desde;
+        String horarios = "00-24";
+        if (partes.length == 4) {
+            hasta = parseFecha(partes[2]);
+            horarios = partes[3];
+        } else if (partes.length == 3) {
+            if (partes[2].contains("/")) {
+                hasta = parseFecha(partes[2]);
+            } else {
+                horarios = partes[2];
+            }
+        }
+        validarFechasYHorarios(desde, hasta, horarios);
+        return new CalendarioCierres.Cierre(partes[0], desde, hasta, horarios);
+    }
+
+    // Second field of a request line, if the line got that far
+    private static String salaDeLinea(String linea) {
+        String[] partes = linea.split(" ", 3);
+        return partes.length > 1 ? partes[1] : null;
+    }
+
+    // First field of a closure line; rules for all rooms have no single room
+    private static String salaDeCierre(String linea) {
+        String sala = linea.split(" ", 2)[0];
+        return CalendarioCierres.TODAS.equals(sala) ? null : sala;
+    }
+
     /**
      * Crea un objeto Reserva a partir de una línea del archivo de peticiones.
      * Incluye validaciones y conversión de días de la semana.
@@ -0,0 +1,180 @@
+package net.elpuig.Agenda.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import net.elpuig.Agenda.model.ResultadoAgenda;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.util.*;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Resultados como archivos JSON en un directorio compartido por todos los nodos
+ * ({@code agenda.store.directorio}, por ejemplo un volumen de red). Cada resultado se
+ * escribe una sola vez en {@code <id>.json}; el archivo {@code ultimo} contiene el id del
+ * último resultado. Las escrituras van a un temporal y se mueven de forma atómica, así que
+ * un lector nunca ve un archivo a medias.
+ *
+ * Delante del directorio hay una caché local (LRU, {@code agenda.store.cache-local}
+ * resultados): como los resultados no cambian una vez escritos, solo hay que volver a
+ * leer el puntero {@code ultimo}.
+ *
+ * Tras cada escritura se conservan solo los {@code agenda.store.retencion} archivos de
+ * resultado más recientes (0 = sin límite); el último resultado nunca se borra.
+ */
+@Service
+@ConditionalOnProperty(name = "agenda.store.tipo", havingValue = "disco")
+public class DiscoAgendaResultStore implements AgendaResultStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(DiscoAgendaResultStore.class);
+
+    // Result ids are UUIDs; anything else is rejected before touching the file system
+    private static final Pattern ID_VALIDO = Pattern.compile("[0-9a-fA-F-]{1,64}");
+    private static final String ULTIMO = "ultimo";
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${agenda.store.directorio:agenda-resultados}")
+    private Path directorio;
+
+    @Value("${agenda.store.cache-local:5}")
+    private int maxCacheLocal = 5;
+
+    @Value("${agenda.store.retencion:100}")
+    private int retencion = 100;
+
+    private final Map<String, ResultadoAgenda> cacheLocal = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, ResultadoAgenda> eldest) {
+            return size() > maxCacheLocal;
+        }
+    };
+
+    @PostConstruct
+    public void init() throws IOException {
+        Files.createDirectories(directorio);
+        logger.info("Resultados de agenda en {}", directorio.toAbsolutePath());
+    }
+
+    @Override
+    public void guardar(ResultadoAgenda resultado) {
+        try {
+            Path archivo = directorio.resolve(resultado.getId() + ".json");
+            if (!Files.exists(archivo)) {
+                escribirAtomico(archivo, objectMapper.writeValueAsBytes(resultado));
+            }
+            escribirAtomico(directorio.resolve(ULTIMO), resultado.getId().getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se pudo guardar el resultado " + resultado.getId() + " en " + directorio, e);
+        }
+        synchronized (cacheLocal) {
+            cacheLocal.put(resultado.getId(), resultado);
+        }
+        if (retencion > 0) {
+            podar(resultado.getId());
+        }
+    }
+
+    // Deletes the oldest result files beyond the retention; other nodes may be pruning too,
+    // so files that are already gone are skipped
+    private void podar(String ultimoId) {
+        List<Path> archivos;
+        try (Stream<Path> listado = Files.list(directorio)) {
+            archivos = listado.filter(p -> p.getFileName().toString().endsWith(".json")).toList();
+        } catch (IOException e) {
+            logger.warn("No se pudieron listar los resultados de {}: {}", directorio, e.getMessage());
+            return;
+        }
+        if (archivos.size() <= retencion) {
+            return;
+        }
+        Map<Path, FileTime> modificados = new HashMap<>();
+        for (Path archivo : archivos) {
+            try {
+                modificados.put(archivo, Files.getLastModifiedTime(archivo));
+            } catch (IOException e) {
+                // Deleted meanwhile
+            }
+        }
+        List<Path> antiguos = modificados.keySet().stream()
+                .sorted(Comparator.<Path, FileTime>comparing(modificados::get).thenComparing(Path::getFileName))
+                .toList();
+        int sobrantes = antiguos.size() - retencion;
+        for (int i = 0; i < antiguos.size() && sobrantes > 0; i++) {
+            String id = antiguos.get(i).getFileName().toString().replaceFirst("\\.json$", "");
+            if (id.equals(ultimoId)) {
+                continue;
+            }
+            try {
+                Files.deleteIfExists(antiguos.get(i));
+            } catch (IOException e) {
+                logger.warn("No se pudo borrar el resultado {}: {}", antiguos.get(i), e.getMessage());
+            }
+            synchronized (cacheLocal) {
+                cacheLocal.remove(id);
+            }
+            sobrantes--;
+        }
+    }
+
+    @Override
+    public ResultadoAgenda obtener(String id) {
+        if (id == null || !ID_VALIDO.matcher(id).matches()) {
+            return null;
+        }
+        synchronized (cacheLocal) {
+            ResultadoAgenda enCache = cacheLocal.get(id);
+            if (enCache != null) {
+                return enCache;
+            }
+        }
+        Path archivo = directorio.resolve(id + ".json");
+        try {
+            ResultadoAgenda resultado = objectMapper.readValue(archivo.toFile(), ResultadoAgenda.class);
+            synchronized (cacheLocal) {
+                cacheLocal.put(id, resultado);
+            }
+            return resultado;
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            if (!Files.exists(archivo)) {
+                return null;
+            }
+            throw new UncheckedIOException("No se pudo leer el resultado " + id + " de " + directorio, e);
+        }
+    }
+
+    @Override
+    public ResultadoAgenda obtenerUltimo() {
+        try {
+            return obtener(Files.readString(directorio.resolve(ULTIMO), StandardCharsets.UTF_8).trim());
+        } catch (NoSuchFileException e) {
+            return null; // Nothing processed yet
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se pudo leer el último resultado de " + directorio, e);
+        }
+    }
+
+    private void escribirAtomico(Path destino, byte[] contenido) throws IOException {
+        Path temporal = Files.createTempFile(directorio, ".escritura-", ".tmp");
+        try {
+            Files.write(temporal, contenido);
+            Files.move(temporal, destino, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temporal);
+        }
+    }
+}
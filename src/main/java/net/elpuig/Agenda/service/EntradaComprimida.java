@@ -0,0 +1,129 @@
+package net.elpuig.Agenda.service;
+
+import java.io.BufferedInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Detecta por los bytes mágicos si un archivo de entrada viene comprimido (gzip o zip)
+ * y devuelve un stream que lo descomprime sobre la marcha, sin archivos temporales
+ * ni inflar el contenido completo en memoria. El texto plano se devuelve tal cual.
+ *
+ * El contenido leído, ya descomprimido, no puede superar el máximo indicado: un archivo
+ * comprimido pequeño podría inflarse (por ejemplo, en una única línea enorme) hasta agotar
+ * la memoria del lector.
+ */
+public final class EntradaComprimida {
+
+    private static final int BUFFER = 64 * 1024;
+
+    /**
+     * La entrada supera el máximo de bytes descomprimidos (agenda.entrada.max-bytes).
+     */
+    public static final class EntradaDemasiadoGrandeException extends IOException {
+        public EntradaDemasiadoGrandeException(String mensaje) {
+            super(mensaje);
+        }
+    }
+
+    private EntradaComprimida() {
+    }
+
+    /**
+     * @param entrada Stream original (subida o archivo)
+     * @param nombre   Nombre lógico del archivo, para los mensajes de error
+     * @param maxBytes Bytes descomprimidos que se pueden leer como máximo
+     * @return Stream con el contenido descomprimido; al pasar de maxBytes, la lectura falla con
+     *         {@link EntradaDemasiadoGrandeException}
+     * @throws IOException Si el formato no está soportado o el archivo comprimido está vacío
+     */
+    public static InputStream abrir(InputStream entrada, String nombre, long maxBytes) throws IOException {
+        return new EntradaLimitada(abrir(entrada, nombre), nombre, maxBytes);
+    }
+
+    private static InputStream abrir(InputStream entrada, String nombre) throws IOException {
+        BufferedInputStream buffered = new BufferedInputStream(entrada, BUFFER);
+        buffered.mark(4);
+        byte[] cabecera = buffered.readNBytes(4);
+        buffered.reset();
+
+        if (cabecera.length >= 2 && (cabecera[0] & 0xFF) == 0x1F && (cabecera[1] & 0xFF) == 0x8B) {
+            return new GZIPInputStream(buffered, BUFFER);
+        }
+        if (cabecera.length == 4 && cabecera[0] == 'P' && cabecera[1] == 'K' && cabecera[2] == 3 && cabecera[3] == 4) {
+            return abrirZip(buffered, nombre);
+        }
+        if (cabecera.length == 4 && (cabecera[0] & 0xFF) == 0x28 && (cabecera[1] & 0xFF) == 0xB5
+                && (cabecera[2] & 0xFF) == 0x2F && (cabecera[3] & 0xFF) == 0xFD) {
+            throw new IOException("Formato zstd no soportado para " + nombre + ". Use gzip, zip o texto plano.");
+        }
+        return buffered;
+    }
+
+    // Only the first file entry of the archive is read
+    private static InputStream abrirZip(InputStream entrada, String nombre) throws IOException {
+        ZipInputStream zip = new ZipInputStream(entrada);
+        ZipEntry entradaZip;
+        while ((entradaZip = zip.getNextEntry()) != null) {
+            if (!entradaZip.isDirectory()) {
+                return zip;
+            }
+        }
+        throw new IOException("El archivo zip " + nombre + " no contiene ningún archivo.");
+    }
+
+    // Counts the bytes handed to the reader, after decompression
+    private static final class EntradaLimitada extends FilterInputStream {
+        private final String nombre;
+        private final long maxBytes;
+        private long leidos;
+
+        EntradaLimitada(InputStream entrada, String nombre, long maxBytes) {
+            super(entrada);
+            this.nombre = nombre;
+            this.maxBytes = maxBytes;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                contar(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                contar(n);
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long saltados = super.skip(n);
+            contar(saltados);
+            return saltados;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false; // reset() would make bytes count twice
+        }
+
+        private void contar(long n) throws IOException {
+            leidos += n;
+            if (leidos > maxBytes) {
+                throw new EntradaDemasiadoGrandeException("El archivo " + nombre + " supera el máximo de " + maxBytes
+                        + " bytes una vez descomprimido (agenda.entrada.max-bytes).");
+            }
+        }
+    }
+}
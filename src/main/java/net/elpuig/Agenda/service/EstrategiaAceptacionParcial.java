@@ -0,0 +1,69 @@
+package net.elpuig.Agenda.service;
+
+import net.elpuig.Agenda.model.CursorFranjas;
+import net.elpuig.Agenda.model.Incidencia;
+import net.elpuig.Agenda.model.Reserva;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Orden de llegada, pero decidiendo día a día: solo se rechazan los días en los que la
+ * reserva choca con otra ya aceptada. Los días aceptados consecutivos se agrupan en
+ * fragmentos de la reserva original (mismo id y actividad, rango de fechas recortado).
+ */
+@Component("parcial")
+public class EstrategiaAceptacionParcial implements EstrategiaResolucion {
+
+    @Override
+    public void resolver(List<Reserva> reservas, ResolucionReservas resolucion) {
+        CursorFranjas cursor = new CursorFranjas();
+        for (Reserva reserva : reservas) {
+            if (!resolucion.validarHorario(reserva)) {
+                resolucion.reservaResuelta();
+                continue;
+            }
+
+            // Days outside the weekday pattern are skipped by the cursor, so they neither break nor extend a fragment
+            long inicioTramo = Long.MIN_VALUE;
+            long finTramo = Long.MIN_VALUE;
+            boolean algunDiaRechazado = false;
+            cursor.reiniciar(reserva);
+            while (cursor.siguiente()) {
+                List<Incidencia> conflictos = resolucion.buscarConflictos(reserva, cursor.getDiaEpoch());
+                if (conflictos.isEmpty()) {
+                    if (inicioTramo == Long.MIN_VALUE) {
+                        inicioTramo = cursor.getDiaEpoch();
+                    }
+                    finTramo = cursor.getDiaEpoch();
+                } else {
+                    algunDiaRechazado = true;
+                    resolucion.rechazar(conflictos);
+                    if (inicioTramo != Long.MIN_VALUE) {
+                        resolucion.aceptar(fragmento(reserva, inicioTramo, finTramo));
+                        inicioTramo = Long.MIN_VALUE;
+                    }
+                }
+            }
+            if (!algunDiaRechazado) {
+                resolucion.aceptar(reserva);
+            } else if (inicioTramo != Long.MIN_VALUE) {
+                resolucion.aceptar(fragmento(reserva, inicioTramo, finTramo));
+            }
+            resolucion.reservaResuelta();
+        }
+    }
+
+    private Reserva fragmento(Reserva reserva, long inicio, long fin) {
+        Reserva fragmento = new Reserva(reserva.getNombreActividad(), reserva.getSala(), LocalDate.ofEpochDay(inicio),
+                LocalDate.ofEpochDay(fin), reserva.getDiasSemana(), reserva.getHorarios());
+        fragmento.setId(reserva.getId());
+        return fragmento;
+    }
+
+    @Override
+    public String getCoste() {
+        return "O(S)";
+    }
+}
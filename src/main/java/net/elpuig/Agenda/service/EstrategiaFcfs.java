@@ -0,0 +1,26 @@
+package net.elpuig.Agenda.service;
+
+import net.elpuig.Agenda.model.Reserva;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Orden de llegada: cada reserva se acepta entera si no choca con ninguna de las
+ * anteriores y se rechaza entera en caso contrario.
+ */
+@Component("fcfs")
+public class EstrategiaFcfs implements EstrategiaResolucion {
+
+    @Override
+    public void resolver(List<Reserva> reservas, ResolucionReservas resolucion) {
+        for (Reserva reserva : reservas) {
+            resolucion.aceptarSiLibre(reserva);
+        }
+    }
+
+    @Override
+    public String getCoste() {
+        return "O(S)";
+    }
+}
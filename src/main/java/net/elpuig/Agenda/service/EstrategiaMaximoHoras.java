@@ -0,0 +1,48 @@
+package net.elpuig.Agenda.service;
+
+import net.elpuig.Agenda.model.Reserva;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Planificación voraz por peso: las reservas se ordenan por horas totales ocupadas
+ * (de más a menos) y cada una se acepta si sigue libre. Como dos reservas solo chocan
+ * si coinciden en día y hora (no basta con que se solapen sus rangos de fechas), el
+ * problema exacto es un conjunto independiente de peso máximo; el voraz por peso es la
+ * aproximación habitual y evita que una reserva corta desplace a una de varios meses.
+ *
+ * Las actividades prioritarias (ver {@link EstrategiaPrioridadActividad}) se colocan
+ * siempre delante, para que un cierre nunca pierda frente a una reserva más larga.
+ */
+@Component("max-horas")
+public class EstrategiaMaximoHoras implements EstrategiaResolucion {
+
+    @Autowired
+    private EstrategiaPrioridadActividad prioridad;
+
+    @Override
+    public void resolver(List<Reserva> reservas, ResolucionReservas resolucion) {
+        List<Candidata> candidatas = new ArrayList<>(reservas.size());
+        for (Reserva reserva : reservas) {
+            candidatas.add(new Candidata(reserva, prioridad.getRango(reserva), ResolucionReservas.contarHoras(reserva)));
+        }
+        // Stable sort: equal weights keep arrival order
+        candidatas.sort(Comparator.comparingInt(Candidata::rango)
+                .thenComparing(Comparator.comparingLong(Candidata::horas).reversed()));
+        for (Candidata candidata : candidatas) {
+            resolucion.aceptarSiLibre(candidata.reserva());
+        }
+    }
+
+    private record Candidata(Reserva reserva, int rango, long horas) {
+    }
+
+    @Override
+    public String getCoste() {
+        return "O(n log n + S)";
+    }
+}
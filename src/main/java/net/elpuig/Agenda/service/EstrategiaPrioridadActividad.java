@@ -0,0 +1,46 @@
+package net.elpuig.Agenda.service;
+
+import net.elpuig.Agenda.model.Reserva;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Las actividades listadas en {@code agenda.conflictos.prioridades} (por defecto "Tancat")
+ * se resuelven primero y en ese orden; el resto, por orden de llegada.
+ */
+@Component("prioridad")
+public class EstrategiaPrioridadActividad implements EstrategiaResolucion {
+
+    @Value("${agenda.conflictos.prioridades:Tancat}")
+    private List<String> prioridades = List.of("Tancat");
+
+    @Override
+    public void resolver(List<Reserva> reservas, ResolucionReservas resolucion) {
+        List<Reserva> ordenadas = new ArrayList<>(reservas);
+        ordenadas.sort(Comparator.comparingInt(this::getRango)); // Stable: keeps arrival order within a rank
+        for (Reserva reserva : ordenadas) {
+            resolucion.aceptarSiLibre(reserva);
+        }
+    }
+
+    /**
+     * Posición de la actividad en la lista de prioridades; las actividades no listadas van al final.
+     */
+    public int getRango(Reserva reserva) {
+        for (int i = 0; i < prioridades.size(); i++) {
+            if (prioridades.get(i).equalsIgnoreCase(reserva.getNombreActividad())) {
+                return i;
+            }
+        }
+        return prioridades.size();
+    }
+
+    @Override
+    public String getCoste() {
+        return "O(n log n + S)";
+    }
+}
@@ -0,0 +1,27 @@
+package net.elpuig.Agenda.service;
+
+import net.elpuig.Agenda.model.Reserva;
+
+import java.util.List;
+
+/**
+ * Estrategia de resolución de conflictos entre reservas de una misma sala.
+ * Cada implementación es un bean cuyo nombre se selecciona con la propiedad
+ * {@code agenda.conflictos.estrategia}.
+ *
+ * En las cotas de coste, n es el número de reservas y S el número total de
+ * franjas horarias (día y hora) que ocupan todas ellas.
+ */
+public interface EstrategiaResolucion {
+
+    /**
+     * Decide qué reservas (o qué partes de ellas) se aceptan, usando las operaciones
+     * de {@link ResolucionReservas} sobre el índice de ocupación.
+     */
+    void resolver(List<Reserva> reservas, ResolucionReservas resolucion);
+
+    /**
+     * Cota de coste de la estrategia, para comparar con los tiempos medidos.
+     */
+    String getCoste();
+}
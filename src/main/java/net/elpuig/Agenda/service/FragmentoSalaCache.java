@@ -0,0 +1,92 @@
+package net.elpuig.Agenda.service;
+
+import net.elpuig.Agenda.model.AgendaViewModel;
+import net.elpuig.Agenda.model.ResultadoAgenda;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.thymeleaf.ITemplateEngine;
+import org.thymeleaf.context.Context;
+
+import java.time.YearMonth;
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Caché LRU del HTML de las tablas semanales de cada sala (plantilla sala.html).
+ * La clave incluye la huella de la ocupación de la sala, así que una sala solo se vuelve a
+ * renderizar cuando cambian sus reservas, el mes o el idioma de salida.
+ */
+@Service
+public class FragmentoSalaCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(FragmentoSalaCache.class);
+
+    @Autowired
+    private ITemplateEngine templateEngine;
+
+    @Value("${agenda.fragmentos.max:200}")
+    private int maxFragmentos = 200;
+
+    private record ClaveFragmento(String sala, YearMonth mes, String idioma, String huellaSala) {
+    }
+
+    // Access-ordered LinkedHashMap: the least recently used fragment is evicted first
+    private final Map<ClaveFragmento, String> fragmentos = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<ClaveFragmento, String> eldest) {
+            return size() > maxFragmentos;
+        }
+    };
+
+    /**
+     * Devuelve el HTML de las salas del resultado, en orden alfabético. Solo las salas que no
+     * están en caché se pasan a {@code construirViewModel}, que debe crear un AgendaViewModel
+     * con (al menos) esas salas.
+     *
+     * @param salaFiltro Si no es null, solo se devuelve esa sala.
+     */
+    public Map<String, String> renderizarSalas(ResultadoAgenda resultado, String salaFiltro,
+                                               Function<Set<String>, AgendaViewModel> construirViewModel) {
+        Map<String, String> html = new LinkedHashMap<>();
+        Map<String, ClaveFragmento> pendientes = new LinkedHashMap<>();
+
+        for (Map.Entry<String, String> entrada : new TreeMap<>(resultado.getHuellasPorSala()).entrySet()) {
+            String sala = entrada.getKey();
+            if (salaFiltro != null && !salaFiltro.equals(sala)) {
+                continue;
+            }
+            ClaveFragmento clave = new ClaveFragmento(sala, resultado.getMesProcesar(), resultado.getIdiomaSalida(), entrada.getValue());
+            String fragmento;
+            synchronized (fragmentos) {
+                fragmento = fragmentos.get(clave);
+            }
+            html.put(sala, fragmento); // Keeps the room order; misses are filled in below
+            if (fragmento == null) {
+                pendientes.put(sala, clave);
+            }
+        }
+
+        if (!pendientes.isEmpty()) {
+            AgendaViewModel viewModel = construirViewModel.apply(pendientes.keySet());
+            for (Map.Entry<String, ClaveFragmento> pendiente : pendientes.entrySet()) {
+                String fragmento = renderizar(pendiente.getKey(), viewModel);
+                html.put(pendiente.getKey(), fragmento);
+                synchronized (fragmentos) {
+                    fragmentos.put(pendiente.getValue(), fragmento);
+                }
+            }
+        }
+        logger.debug("Fragmentos de sala: {} reutilizados, {} renderizados", html.size() - pendientes.size(), pendientes.size());
+        return html;
+    }
+
+    private String renderizar(String sala, AgendaViewModel viewModel) {
+        Context context = new Context();
+        context.setVariable("sala", sala);
+        context.setVariable("agendaViewModel", viewModel);
+        return templateEngine.process("sala", Set.of("sala"), context);
+    }
+}
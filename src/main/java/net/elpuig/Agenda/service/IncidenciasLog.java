@@ -0,0 +1,264 @@
+package net.elpuig.Agenda.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import net.elpuig.Agenda.model.Incidencia;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Registro de incidencias (incidencies.log). Quien detecta una incidencia solo la encola
+ * en una cola acotada sin bloqueos; un hilo escritor la vacía por lotes en el archivo a
+ * través de un FileChannel y lo rota al superar el tamaño máximo.
+ *
+ * Cada línea lleva campos separados: momento, tipo, archivo y linea de origen, sala, fecha,
+ * franja y motivo.
+ * Si la cola está llena, quien registra espera como mucho agenda.incidencias.espera-ms a
+ * que el escritor libere hueco y, si no lo hay, descarta el registro y lo contabiliza.
+ */
+@Service
+public class IncidenciasLog {
+    private static final Logger logger = LoggerFactory.getLogger(IncidenciasLog.class);
+
+    // The writer wakes up at least this often to flush partial batches
+    private static final long INTERVALO_ESCRITURA_NS = TimeUnit.MILLISECONDS.toNanos(200);
+
+    private record Registro(Instant momento, String tipo, String archivo, int linea, String sala, LocalDate fecha,
+                            String franja, String motivo) {
+    }
+
+    @Value("${agenda.incidencias.archivo:incidencies.log}")
+    private String archivo;
+
+    @Value("${agenda.incidencias.capacidad:8192}")
+    private int capacidad;
+
+    @Value("${agenda.incidencias.lote:512}")
+    private int tamanoLote;
+
+    @Value("${agenda.incidencias.max-bytes:10485760}")
+    private long maxBytes;
+
+    @Value("${agenda.incidencias.rotaciones:5}")
+    private int rotaciones;
+
+    @Value("${agenda.incidencias.espera-ms:50}")
+    private long esperaMs;
+
+    private final ConcurrentLinkedQueue<Registro> cola = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pendientes = new AtomicInteger(); // Bounds the queue: slots reserved by producers
+    private final AtomicLong descartados = new AtomicLong();          // Total since start, never reset
+    private final AtomicLong descartadosSinEscribir = new AtomicLong(); // Not yet reported in the file
+
+    private volatile boolean activo;
+    private Thread escritor;
+
+    // Only touched by the writer thread
+    private Path ruta;
+    private FileChannel canal;
+    private long tamanoActual;
+
+    @PostConstruct
+    public void iniciar() {
+        ruta = Paths.get(archivo);
+        activo = true;
+        escritor = Thread.ofPlatform().daemon().name("incidencias-log").start(this::escribirEnBucle);
+    }
+
+    @PreDestroy
+    public void detener() throws InterruptedException {
+        activo = false;
+        LockSupport.unpark(escritor);
+        escritor.join(TimeUnit.SECONDS.toMillis(5));
+    }
+
+    /**
+     * Registra una incidencia de resolución (conflicto, cierre o formato). La línea es el
+     * identificador de la reserva rechazada, es decir, su línea en peticiones.txt.
+     */
+    public boolean registrar(Incidencia incidencia) {
+        return registrar(incidencia.getTipo(), "peticiones.txt", incidencia.getReservaId(), incidencia.getSala(),
+                incidencia.getFecha(), incidencia.getFranja(), incidencia.getMensaje());
+    }
+
+    /**
+     * Encola una incidencia sin esperar a que se escriba.
+     *
+     * @param tipo    Incidencia.TIPO_CONFLICTO, Incidencia.TIPO_CIERRE o Incidencia.TIPO_FORMATO
+     * @param archivo Archivo de origen (peticiones.txt o calendario.txt)
+     * @param linea   Línea del archivo de origen
+     * @param sala    Sala afectada (null si no se conoce)
+     * @param fecha   Día afectado (null si no aplica)
+     * @param franja  Franja horaria afectada (null si no aplica)
+     * @param motivo  Descripción legible
+     * @return false si el registro se ha descartado porque la cola seguía llena
+     */
+    public boolean registrar(String tipo, String archivo, int linea, String sala, LocalDate fecha, String franja,
+                             String motivo) {
+        if (!activo || !reservarHueco()) {
+            descartadosSinEscribir.incrementAndGet();
+            descartados.incrementAndGet();
+            return false;
+        }
+        cola.offer(new Registro(Instant.now(), tipo, archivo, linea, sala, fecha, franja, motivo));
+        if (pendientes.get() == tamanoLote) {
+            LockSupport.unpark(escritor); // A full batch is ready, no need to wait for the interval
+        }
+        return true;
+    }
+
+    /**
+     * Registros descartados desde el arranque por tener la cola llena.
+     */
+    public long getDescartados() {
+        return descartados.get();
+    }
+
+    // Backpressure: a full queue holds the producer for at most esperaMs, never on file I/O
+    private boolean reservarHueco() {
+        if (intentarReservar()) {
+            return true;
+        }
+        LockSupport.unpark(escritor);
+        long limite = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(esperaMs);
+        while (System.nanoTime() < limite) {
+            LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(100));
+            if (intentarReservar()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean intentarReservar() {
+        int actual;
+        do {
+            actual = pendientes.get();
+            if (actual >= capacidad) {
+                return false;
+            }
+        } while (!pendientes.compareAndSet(actual, actual + 1));
+        return true;
+    }
+
+    private void escribirEnBucle() {
+        StringBuilder lote = new StringBuilder(tamanoLote * 160);
+        while (activo || !cola.isEmpty()) {
+            if (activo && pendientes.get() < tamanoLote) {
+                LockSupport.parkNanos(INTERVALO_ESCRITURA_NS);
+            }
+            vaciarCola(lote);
+        }
+        cerrarCanal();
+    }
+
+    private void vaciarCola(StringBuilder lote) {
+        int enLote = 0;
+        Registro registro;
+        while ((registro = cola.poll()) != null) {
+            pendientes.decrementAndGet();
+            formatear(registro, lote);
+            if (++enLote == tamanoLote) {
+                escribir(lote);
+                enLote = 0;
+            }
+        }
+        long perdidos = descartadosSinEscribir.getAndSet(0);
+        if (perdidos > 0) {
+            logger.warn("{} incidencias descartadas: la cola del registro de incidencias estaba llena", perdidos);
+            lote.append(Instant.now()).append(" DESCARTADAS total=").append(perdidos).append('\n');
+            enLote++;
+        }
+        if (enLote > 0) {
+            escribir(lote);
+        }
+    }
+
+    private static void formatear(Registro registro, StringBuilder destino) {
+        destino.append(registro.momento()).append(' ').append(registro.tipo())
+                .append(" archivo=").append(registro.archivo())
+                .append(" linea=").append(registro.linea())
+                .append(" sala=").append(registro.sala() != null ? registro.sala() : "-")
+                .append(" fecha=").append(registro.fecha() != null ? registro.fecha() : "-")
+                .append(" franja=").append(registro.franja() != null ? registro.franja() : "-")
+                .append(" motivo=").append(registro.motivo().replace('\n', ' '))
+                .append('\n');
+    }
+
+    private void escribir(StringBuilder lote) {
+        ByteBuffer buffer = ByteBuffer.wrap(lote.toString().getBytes(StandardCharsets.UTF_8));
+        lote.setLength(0);
+        try {
+            if (canal == null) {
+                abrirCanal();
+            }
+            // A batch is never split across files
+            if (tamanoActual > 0 && tamanoActual + buffer.remaining() > maxBytes) {
+                rotar();
+            }
+            while (buffer.hasRemaining()) {
+                tamanoActual += canal.write(buffer);
+            }
+        } catch (IOException e) {
+            // The batch is lost; the channel is reopened on the next one
+            logger.error("Error al escribir en {}: {}", ruta, e.getMessage());
+            cerrarCanal();
+        }
+    }
+
+    private void abrirCanal() throws IOException {
+        Path padre = ruta.toAbsolutePath().getParent();
+        if (padre != null) {
+            Files.createDirectories(padre);
+        }
+        canal = FileChannel.open(ruta, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        tamanoActual = canal.size();
+    }
+
+    // incidencies.log -> incidencies.log.1 -> ... -> incidencies.log.<rotaciones>; the oldest is dropped
+    private void rotar() throws IOException {
+        cerrarCanal();
+        if (rotaciones > 0) {
+            for (int i = rotaciones - 1; i >= 1; i--) {
+                Path origen = Paths.get(archivo + "." + i);
+                if (Files.exists(origen)) {
+                    Files.move(origen, Paths.get(archivo + "." + (i + 1)), StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+            Files.move(ruta, Paths.get(archivo + ".1"), StandardCopyOption.REPLACE_EXISTING);
+        } else {
+            Files.deleteIfExists(ruta);
+        }
+        abrirCanal();
+    }
+
+    private void cerrarCanal() {
+        if (canal != null) {
+            try {
+                canal.close();
+            } catch (IOException e) {
+                logger.warn("Error al cerrar {}: {}", ruta, e.getMessage());
+            }
+            canal = null;
+        }
+    }
+}
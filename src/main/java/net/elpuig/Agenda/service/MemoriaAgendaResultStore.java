@@ -0,0 +1,49 @@
+package net.elpuig.Agenda.service;
+
+import net.elpuig.Agenda.model.ResultadoAgenda;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Resultados en el heap de este nodo. Es la opción por defecto, para un único nodo.
+ * Cada resultado guarda todas las reservas aceptadas e incidencias de su procesamiento,
+ * así que {@code agenda.store.max} debe ser pequeño.
+ */
+@Service
+@ConditionalOnProperty(name = "agenda.store.tipo", havingValue = "memoria", matchIfMissing = true)
+public class MemoriaAgendaResultStore implements AgendaResultStore {
+
+    @Value("${agenda.store.max:5}")
+    private int maxResultados = 5;
+
+    // Oldest results are evicted first when the limit is exceeded (insertion order)
+    private final Map<String, ResultadoAgenda> resultados = Collections.synchronizedMap(new LinkedHashMap<>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, ResultadoAgenda> eldest) {
+            return size() > maxResultados;
+        }
+    });
+
+    private volatile ResultadoAgenda ultimo;
+
+    @Override
+    public void guardar(ResultadoAgenda resultado) {
+        resultados.put(resultado.getId(), resultado);
+        ultimo = resultado;
+    }
+
+    @Override
+    public ResultadoAgenda obtener(String id) {
+        return resultados.get(id);
+    }
+
+    @Override
+    public ResultadoAgenda obtenerUltimo() {
+        return ultimo;
+    }
+}
@@ -0,0 +1,107 @@
+package net.elpuig.Agenda.service;
+
+import net.elpuig.Agenda.model.ProgresoProcesamiento;
+import net.elpuig.Agenda.model.ResultadoAgenda;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.io.InputStream;
+import java.time.Instant;
+import java.util.UUID;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Encadena la carga (DataLoader) y la resolución de conflictos (AgendaProcessor) y guarda
+ * el resultado como {@link ResultadoAgenda}. Lo usan tanto el procesamiento síncrono de
+ * /procesar como los trabajos en segundo plano.
+ */
+@Service
+public class ProcesamientoAgendaService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProcesamientoAgendaService.class);
+
+    @Autowired
+    private I18nService i18nService;
+
+    @Autowired
+    private AgendaProcessor agendaProcessor;
+
+    @Autowired
+    private DataLoader dataLoader;
+
+    @Autowired
+    private AgendaResultStore agendaResultStore;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    public ResultadoAgenda procesar(InputStream configStream, InputStream peticionesStream,
+                                    InputStream calendarioStream, ProgresoProcesamiento progreso) throws Exception {
+        return procesar(UUID.randomUUID().toString(), configStream, peticionesStream, calendarioStream, progreso);
+    }
+
+    /**
+     * Procesa los archivos y guarda el resultado con el id indicado en el AgendaResultStore,
+     * donde pasa a ser el último resultado. DataLoader y AgendaProcessor guardan estado, así
+     * que los procesamientos se ejecutan de uno en uno.
+     *
+     * @param calendarioStream calendario.txt con los cierres, o null si no se ha subido
+     * @throws Exception Si config.txt es inválido o no hay traducciones para el idioma de salida.
+     */
+    public ResultadoAgenda procesar(String id, InputStream configStream, InputStream peticionesStream,
+                                    InputStream calendarioStream, ProgresoProcesamiento progreso) throws Exception {
+        // A ReentrantLock rather than synchronized: queued background jobs run on virtual threads,
+        // which would pin their carrier thread while blocked on a monitor (JDK 21)
+        lock.lock();
+        try {
+            return procesarConBloqueo(id, configStream, peticionesStream, calendarioStream, progreso);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private ResultadoAgenda procesarConBloqueo(String id, InputStream configStream, InputStream peticionesStream,
+                                               InputStream calendarioStream, ProgresoProcesamiento progreso) throws Exception {
+        progreso.setEtapa(ProgresoProcesamiento.Etapa.CARGANDO);
+        dataLoader.cargarArchivos(configStream, peticionesStream, i18nService.getTodosLosIdiomasTraducciones(), progreso);
+        if (calendarioStream != null) {
+            dataLoader.cargarCalendario(calendarioStream);
+        }
+
+        progreso.setEtapa(ProgresoProcesamiento.Etapa.RESOLVIENDO);
+        agendaProcessor.procesarReservas(dataLoader.getReservas(), dataLoader.getTraducciones(),
+                dataLoader.getCalendario(), progreso);
+
+        ResultadoAgenda resultado = new ResultadoAgenda(
+                id,
+                Instant.now(),
+                dataLoader.getMesProcesar(),
+                dataLoader.getIdiomaSalida(),
+                dataLoader.getTraducciones(),
+                agendaProcessor.getReservasValidas(),
+                agendaProcessor.getIncidencias(),
+                agendaProcessor.getIncidenciasDetalladas(),
+                dataLoader.getIncidenciasCarga(),
+                dataLoader.getCalendario());
+        agendaResultStore.guardar(resultado);
+        progreso.setEtapa(ProgresoProcesamiento.Etapa.COMPLETADO);
+        logger.info("Resultado {} generado para {}", resultado.getId(), resultado.getMesProcesar());
+        return resultado;
+    }
+
+    /**
+     * Último resultado procesado correctamente (en cualquier nodo que comparta el almacén),
+     * o null si aún no se ha cargado ninguno.
+     */
+    public ResultadoAgenda getUltimoResultado() {
+        return agendaResultStore.obtenerUltimo();
+    }
+
+    /**
+     * Resultado con ese id (el id del trabajo en segundo plano), o null si no existe.
+     */
+    public ResultadoAgenda getResultado(String id) {
+        return agendaResultStore.obtener(id);
+    }
+}
@@ -0,0 +1,203 @@
+package net.elpuig.Agenda.service;
+
+import net.elpuig.Agenda.model.CalendarioCierres;
+import net.elpuig.Agenda.model.CursorFranjas;
+import net.elpuig.Agenda.model.Incidencia;
+import net.elpuig.Agenda.model.ProgresoProcesamiento;
+import net.elpuig.Agenda.model.Reserva;
+
+import java.time.LocalDate;
+import java.util.*;
+
+/**
+ * Estado de un ciclo de resolución de conflictos: índice de propietarios de las franjas
+ * ocupadas, reservas aceptadas e incidencias generadas. Las {@link EstrategiaResolucion}
+ * deciden el orden y la granularidad con la que se aceptan las reservas; esta clase
+ * ofrece las operaciones comunes sobre el índice.
+ */
+public class ResolucionReservas {
+    private final ProgresoProcesamiento progreso;
+    private final CalendarioCierres calendario;
+    private final List<Reserva> aceptadas = new ArrayList<>();
+    private final List<Incidencia> incidencias = new ArrayList<>();
+
+    // Owner index of occupied slots for conflict detection and explanation:
+    // Map: Sala -> Epoch day -> occupied hours mask plus the accepted Reserva holding each hour
+    private final Map<String, Map<Long, DiaOcupado>> ocupacion = new HashMap<>();
+
+    // Reused for every expansion; the resolution runs on a single thread
+    private final CursorFranjas cursor = new CursorFranjas();
+
+    private static final class DiaOcupado {
+        int mascara;
+        final Reserva[] propietarios = new Reserva[24];
+    }
+
+    public ResolucionReservas() {
+        this(new ProgresoProcesamiento());
+    }
+
+    public ResolucionReservas(ProgresoProcesamiento progreso) {
+        this(progreso, CalendarioCierres.VACIO);
+    }
+
+    /**
+     * @param calendario Horas cerradas por sala: ninguna reserva puede ocuparlas
+     */
+    public ResolucionReservas(ProgresoProcesamiento progreso, CalendarioCierres calendario) {
+        this.progreso = progreso;
+        this.calendario = calendario;
+    }
+
+    /**
+     * Acepta la reserva completa si ninguna de sus franjas está ocupada; si no, registra
+     * todas las franjas en conflicto como incidencias.
+     *
+     * @return true si la reserva se ha aceptado.
+     */
+    public boolean aceptarSiLibre(Reserva reserva) {
+        List<Incidencia> conflictos = buscarConflictos(reserva);
+        progreso.reservaResuelta();
+        if (conflictos.isEmpty()) {
+            aceptar(reserva);
+            return true;
+        }
+        rechazar(conflictos);
+        return false;
+    }
+
+    /**
+     * Para estrategias que no usan {@link #aceptarSiLibre(Reserva)}: indica que una
+     * reserva de la entrada ya está decidida.
+     */
+    public void reservaResuelta() {
+        progreso.reservaResuelta();
+    }
+
+    /**
+     * Devuelve todas las franjas de la reserva ocupadas por reservas ya aceptadas o cerradas
+     * por el calendario, recorriendo la reserva una sola vez.
+     */
+    public List<Incidencia> buscarConflictos(Reserva reserva) {
+        List<Incidencia> conflictos = new ArrayList<>();
+        if (!isHorarioValido(reserva, conflictos)) {
+            return conflictos;
+        }
+        Map<Long, DiaOcupado> dias = ocupacion.get(reserva.getSala());
+        boolean conCierres = calendario.tieneCierres(reserva.getSala());
+        if (dias == null && !conCierres) {
+            return conflictos; // Nothing accepted and nothing closed in this room
+        }
+        cursor.reiniciar(reserva);
+        while (cursor.siguiente()) {
+            long diaEpoch = cursor.getDiaEpoch();
+            int cerradas = conCierres ? calendario.getHorasCerradas(reserva.getSala(), diaEpoch) : 0;
+            agregarConflictos(reserva, dias != null ? dias.get(diaEpoch) : null, cerradas, diaEpoch, conflictos);
+        }
+        return conflictos;
+    }
+
+    /**
+     * Devuelve las franjas ocupadas o cerradas de la reserva en un único día (que debe ser uno de sus días).
+     */
+    public List<Incidencia> buscarConflictos(Reserva reserva, long diaEpoch) {
+        List<Incidencia> conflictos = new ArrayList<>();
+        if (isHorarioValido(reserva, conflictos)) {
+            Map<Long, DiaOcupado> dias = ocupacion.getOrDefault(reserva.getSala(), Collections.emptyMap());
+            agregarConflictos(reserva, dias.get(diaEpoch), calendario.getHorasCerradas(reserva.getSala(), diaEpoch),
+                    diaEpoch, conflictos);
+        }
+        return conflictos;
+    }
+
+    private void agregarConflictos(Reserva reserva, DiaOcupado dia, int cerradas, long diaEpoch,
+                                   List<Incidencia> conflictos) {
+        int horas = reserva.getMascaraHoras();
+        int enCierre = cerradas & horas;
+        int solapadas = dia != null ? dia.mascara & horas & ~cerradas : 0;
+        if ((enCierre | solapadas) == 0) {
+            return;
+        }
+        LocalDate fecha = LocalDate.ofEpochDay(diaEpoch);
+        for (; enCierre != 0; enCierre &= enCierre - 1) {
+            conflictos.add(Incidencia.cierre(reserva, fecha, CursorFranjas.getFranja(Integer.numberOfTrailingZeros(enCierre))));
+        }
+        for (; solapadas != 0; solapadas &= solapadas - 1) {
+            int hora = Integer.numberOfTrailingZeros(solapadas);
+            conflictos.add(Incidencia.conflicto(reserva, fecha, CursorFranjas.getFranja(hora), dia.propietarios[hora]));
+        }
+    }
+
+    /**
+     * Comprueba que los horarios de la reserva se pueden interpretar; si no, registra la
+     * incidencia de formato y devuelve false.
+     */
+    public boolean validarHorario(Reserva reserva) {
+        List<Incidencia> errores = new ArrayList<>();
+        if (isHorarioValido(reserva, errores)) {
+            return true;
+        }
+        rechazar(errores);
+        return false;
+    }
+
+    // Reports an unparsable schedule as a FORMATO incidencia instead of failing the whole run
+    private boolean isHorarioValido(Reserva reserva, List<Incidencia> conflictos) {
+        try {
+            reserva.getMascaraHoras();
+            return true;
+        } catch (NumberFormatException e) {
+            conflictos.add(Incidencia.formato(reserva, reserva.getHorarios()));
+            return false;
+        }
+    }
+
+    /**
+     * Añade la reserva a las aceptadas y marca sus franjas como ocupadas.
+     * No comprueba conflictos: la estrategia debe haberlo hecho antes.
+     */
+    public void aceptar(Reserva reserva) {
+        aceptadas.add(reserva);
+        Map<Long, DiaOcupado> dias = ocupacion.computeIfAbsent(reserva.getSala(), k -> new HashMap<>());
+        int horas = reserva.getMascaraHoras();
+        cursor.reiniciar(reserva);
+        while (cursor.siguiente()) {
+            DiaOcupado dia = dias.computeIfAbsent(cursor.getDiaEpoch(), k -> new DiaOcupado());
+            dia.mascara |= horas;
+            for (int pendientes = horas; pendientes != 0; pendientes &= pendientes - 1) {
+                dia.propietarios[Integer.numberOfTrailingZeros(pendientes)] = reserva;
+            }
+        }
+    }
+
+    public void rechazar(Collection<Incidencia> conflictos) {
+        incidencias.addAll(conflictos);
+    }
+
+    /**
+     * Número total de horas que ocupa la reserva en todo su rango de fechas.
+     * Se usa como peso en las estrategias que maximizan la ocupación.
+     */
+    public static long contarHoras(Reserva reserva) {
+        int horasPorDia;
+        try {
+            horasPorDia = Integer.bitCount(reserva.getMascaraHoras());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+        long dias = 0;
+        CursorFranjas cursor = new CursorFranjas().reiniciar(reserva);
+        while (cursor.siguiente()) {
+            dias++;
+        }
+        return dias * horasPorDia;
+    }
+
+    public List<Reserva> getAceptadas() {
+        return aceptadas;
+    }
+
+    public List<Incidencia> getIncidencias() {
+        return incidencias;
+    }
+}
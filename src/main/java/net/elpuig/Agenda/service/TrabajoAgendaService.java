@@ -0,0 +1,122 @@
+package net.elpuig.Agenda.service;
+
+import jakarta.annotation.PreDestroy;
+import net.elpuig.Agenda.model.TrabajoAgenda;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Ejecuta procesamientos de agenda en segundo plano para que /procesar responda al momento.
+ * Cada trabajo corre en un hilo virtual propio y se puede consultar por su id.
+ */
+@Service
+public class TrabajoAgendaService {
+
+    private static final Logger logger = LoggerFactory.getLogger(TrabajoAgendaService.class);
+
+    @Autowired
+    private ProcesamientoAgendaService procesamientoAgendaService;
+
+    @Value("${agenda.trabajos.max:100}")
+    private int maxTrabajos = 100;
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    // Insertion order, so the oldest finished jobs are evicted first
+    private final Map<String, TrabajoAgenda> trabajos = new LinkedHashMap<>();
+
+    /**
+     * Copia los archivos subidos a ficheros temporales (los de la petición se borran al
+     * terminar esta) y lanza el procesamiento.
+     *
+     * @param calendarioFile Calendario de cierres, o null si no se ha subido
+     * @return El trabajo creado, con su id para consultar el progreso.
+     */
+    public TrabajoAgenda enviar(MultipartFile configFile, MultipartFile peticionesFile,
+                                MultipartFile calendarioFile) throws IOException {
+        TrabajoAgenda trabajo = new TrabajoAgenda(UUID.randomUUID().toString());
+        Path config = Files.createTempFile("agenda-config-", ".tmp");
+        Path peticiones = Files.createTempFile("agenda-peticiones-", ".tmp");
+        Path calendario = null;
+        try {
+            configFile.transferTo(config);
+            peticionesFile.transferTo(peticiones);
+            if (calendarioFile != null) {
+                calendario = Files.createTempFile("agenda-calendario-", ".tmp");
+                calendarioFile.transferTo(calendario);
+            }
+        } catch (IOException e) {
+            borrarTemporales(config, peticiones, calendario);
+            throw e;
+        }
+
+        registrar(trabajo);
+        Path calendarioCopiado = calendario;
+        executor.submit(() -> ejecutar(trabajo, config, peticiones, calendarioCopiado));
+        logger.info("Trabajo {} en cola", trabajo.getId());
+        return trabajo;
+    }
+
+    public synchronized TrabajoAgenda getTrabajo(String id) {
+        return trabajos.get(id);
+    }
+
+    // Over agenda.trabajos.max, finished jobs are dropped oldest first; queued and running jobs are always kept
+    private synchronized void registrar(TrabajoAgenda trabajo) {
+        trabajos.put(trabajo.getId(), trabajo);
+        Iterator<TrabajoAgenda> iterador = trabajos.values().iterator();
+        while (trabajos.size() > maxTrabajos && iterador.hasNext()) {
+            if (iterador.next().getProgreso().isTerminado()) {
+                iterador.remove();
+            }
+        }
+    }
+
+    private void ejecutar(TrabajoAgenda trabajo, Path config, Path peticiones, Path calendario) {
+        try (InputStream configStream = Files.newInputStream(config);
+             InputStream peticionesStream = Files.newInputStream(peticiones);
+             InputStream calendarioStream = calendario != null ? Files.newInputStream(calendario) : null) {
+            // The result is stored under the job id, so /agenda/{id} works on any node
+            procesamientoAgendaService.procesar(trabajo.getId(), configStream, peticionesStream, calendarioStream,
+                    trabajo.getProgreso());
+            logger.info("Trabajo {} completado", trabajo.getId());
+        } catch (Exception e) {
+            logger.error("Error en el trabajo {}: {}", trabajo.getId(), e.getMessage(), e);
+            trabajo.getProgreso().fallar(e.getMessage());
+        } finally {
+            try {
+                borrarTemporales(config, peticiones, calendario);
+            } catch (IOException e) {
+                logger.warn("No se pudieron borrar los archivos temporales del trabajo {}: {}", trabajo.getId(), e.getMessage());
+            }
+        }
+    }
+
+    private static void borrarTemporales(Path... archivos) throws IOException {
+        for (Path archivo : archivos) {
+            if (archivo != null) {
+                Files.deleteIfExists(archivo);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void cerrar() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,187 @@
+package net.elpuig.Agenda.carga;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+
+import java.io.ByteArrayOutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.IntFunction;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Prueba de carga HTTP de /procesar y /agenda: arranca la aplicación en un puerto aleatorio
+ * y la ataca con clientes concurrentes en hilos virtuales. Informa de p50/p99, rendimiento
+ * y bytes asignados por segundo en cada endpoint, y falla si se superan los umbrales.
+ *
+ * Se ejecuta con {@code mvn -Pcarga test}. Parámetros (propiedades del sistema, -D):
+ * carga.clientes, carga.peticiones, carga.lineas, carga.salas y los umbrales
+ * carga.procesar.p99.ms, carga.agenda.p99.ms, carga.agenda.min.rps y carga.agenda304.p99.ms.
+ */
+@Tag("carga")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class AgendaCargaTest {
+
+	private static final Logger logger = LoggerFactory.getLogger(AgendaCargaTest.class);
+
+	private static final YearMonth MES = YearMonth.of(2025, 3);
+
+	private final int clientes = Integer.getInteger("carga.clientes", 8);
+	private final int peticiones = Integer.getInteger("carga.peticiones", 200);
+	private final int lineas = Integer.getInteger("carga.lineas", 500);
+	private final int salas = Integer.getInteger("carga.salas", 20);
+
+	@LocalServerPort
+	private int puerto;
+
+	private final HttpClient cliente = HttpClient.newBuilder()
+			.executor(Executors.newVirtualThreadPerTaskExecutor())
+			.build();
+
+	private record Medicion(String endpoint, long[] latenciasNs, double segundos, long bytesAsignados, int errores) {
+
+		double percentilMs(double percentil) {
+			long[] ordenadas = latenciasNs.clone();
+			Arrays.sort(ordenadas);
+			int indice = (int) Math.ceil(percentil / 100.0 * ordenadas.length) - 1;
+			return ordenadas[Math.max(0, indice)] / 1_000_000.0;
+		}
+
+		double peticionesPorSegundo() {
+			return latenciasNs.length / segundos;
+		}
+
+		double mbAsignadosPorSegundo() {
+			return bytesAsignados / segundos / (1024 * 1024);
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%-14s n=%d errores=%d p50=%.1f ms p99=%.1f ms %.1f req/s %.1f MB/s asignados",
+					endpoint, latenciasNs.length, errores, percentilMs(50), percentilMs(99),
+					peticionesPorSegundo(), mbAsignadosPorSegundo());
+		}
+	}
+
+	@Test
+	void cargaProcesarYAgenda() throws Exception {
+		GeneradorEntradas generador = new GeneradorEntradas(42);
+		byte[] config = generador.config(MES).getBytes(StandardCharsets.UTF_8);
+		List<byte[]> ficheros = new ArrayList<>();
+		for (int i = 0; i < 8; i++) {
+			ficheros.add(generador.peticiones(MES, lineas, salas).getBytes(StandardCharsets.UTF_8));
+		}
+
+		// Uploads are serialized on the server, so they get a smaller share of the requests
+		// A failed upload also answers 302, but redirects back to /upload with the error
+		Medicion procesar = medir("/procesar", Math.max(clientes, peticiones / 10), i -> subida(config, ficheros.get(i % ficheros.size())),
+				r -> r.statusCode() == 302 && r.headers().firstValue("Location").orElse("").endsWith("/agenda"));
+		HttpResponse<String> ultima = cliente.send(peticionGet("/agenda", null), HttpResponse.BodyHandlers.ofString());
+		assertEquals(200, ultima.statusCode());
+		String etag = ultima.headers().firstValue("ETag").orElseThrow();
+
+		Medicion agenda = medir("/agenda", peticiones, i -> peticionGet("/agenda", null), r -> r.statusCode() == 200);
+		Medicion agendaSala = medir("/agenda?sala", peticiones, i -> peticionGet("/agenda?sala=Sala" + (1 + i % salas), null),
+				r -> r.statusCode() == 200);
+		// Nothing is uploaded meanwhile, so every conditional request must be answered from the ETag
+		Medicion agenda304 = medir("/agenda (304)", peticiones, i -> peticionGet("/agenda", etag), r -> r.statusCode() == 304);
+
+		for (Medicion medicion : List.of(procesar, agenda, agendaSala, agenda304)) {
+			logger.info("[carga] {}", medicion);
+			assertEquals(0, medicion.errores(), "Respuestas inesperadas en " + medicion.endpoint());
+		}
+
+		double umbralProcesar = Double.parseDouble(System.getProperty("carga.procesar.p99.ms", "10000"));
+		double umbralAgenda = Double.parseDouble(System.getProperty("carga.agenda.p99.ms", "5000"));
+		double minimoAgenda = Double.parseDouble(System.getProperty("carga.agenda.min.rps", "5"));
+		double umbralAgenda304 = Double.parseDouble(System.getProperty("carga.agenda304.p99.ms", "1000"));
+		assertTrue(procesar.percentilMs(99) <= umbralProcesar, "p99 de /procesar por encima del umbral: " + procesar);
+		assertTrue(agenda.percentilMs(99) <= umbralAgenda, "p99 de /agenda por encima del umbral: " + agenda);
+		assertTrue(agenda.peticionesPorSegundo() >= minimoAgenda, "Rendimiento de /agenda por debajo del umbral: " + agenda);
+		assertTrue(agenda304.percentilMs(99) <= umbralAgenda304, "p99 de /agenda (304) por encima del umbral: " + agenda304);
+	}
+
+	// Runs 'total' requests from 'clientes' concurrent virtual-thread clients; any response
+	// that does not match 'esperada' counts as an error
+	private Medicion medir(String endpoint, int total, IntFunction<HttpRequest> peticion,
+						   Predicate<HttpResponse<byte[]>> esperada) throws Exception {
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		long[] latencias = new long[total];
+		int[] errores = new int[1];
+		long bytesAntes = threads.getTotalThreadAllocatedBytes();
+		long inicio = System.nanoTime();
+		try (ExecutorService ejecutor = Executors.newVirtualThreadPerTaskExecutor()) {
+			List<Future<?>> tareas = new ArrayList<>();
+			for (int c = 0; c < clientes; c++) {
+				int primero = c;
+				tareas.add(ejecutor.submit(() -> {
+					for (int i = primero; i < total; i += clientes) {
+						long t0 = System.nanoTime();
+						HttpResponse<byte[]> respuesta = cliente.send(peticion.apply(i), HttpResponse.BodyHandlers.ofByteArray());
+						latencias[i] = System.nanoTime() - t0;
+						if (!esperada.test(respuesta)) {
+							synchronized (errores) {
+								errores[0]++;
+							}
+						}
+					}
+					return null;
+				}));
+			}
+			for (Future<?> tarea : tareas) {
+				tarea.get();
+			}
+		}
+		double segundos = (System.nanoTime() - inicio) / 1e9;
+		// Client and server share the JVM, so this is the allocation of both sides
+		long bytes = threads.getTotalThreadAllocatedBytes() - bytesAntes;
+		return new Medicion(endpoint, latencias, segundos, bytes, errores[0]);
+	}
+
+	private HttpRequest peticionGet(String ruta, String ifNoneMatch) {
+		HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create("http://localhost:" + puerto + ruta)).GET();
+		if (ifNoneMatch != null) {
+			builder.header("If-None-Match", ifNoneMatch);
+		}
+		return builder.build();
+	}
+
+	private HttpRequest subida(byte[] config, byte[] peticiones) {
+		String frontera = "----agenda" + UUID.randomUUID();
+		ByteArrayOutputStream cuerpo = new ByteArrayOutputStream(config.length + peticiones.length + 512);
+		parte(cuerpo, frontera, "configFile", "config.txt", config);
+		parte(cuerpo, frontera, "peticionesFile", "peticiones.txt", peticiones);
+		cuerpo.writeBytes(("--" + frontera + "--\r\n").getBytes(StandardCharsets.UTF_8));
+		return HttpRequest.newBuilder(URI.create("http://localhost:" + puerto + "/procesar"))
+				.header("Content-Type", "multipart/form-data; boundary=" + frontera)
+				.POST(HttpRequest.BodyPublishers.ofByteArray(cuerpo.toByteArray()))
+				.build();
+	}
+
+	private static void parte(ByteArrayOutputStream cuerpo, String frontera, String nombre, String archivo, byte[] contenido) {
+		String cabecera = "--" + frontera + "\r\n"
+				+ "Content-Disposition: form-data; name=\"" + nombre + "\"; filename=\"" + archivo + "\"\r\n"
+				+ "Content-Type: text/plain\r\n\r\n";
+		cuerpo.writeBytes(cabecera.getBytes(StandardCharsets.UTF_8));
+		cuerpo.writeBytes(contenido);
+		cuerpo.writeBytes("\r\n".getBytes(StandardCharsets.UTF_8));
+	}
+}
@@ -0,0 +1,63 @@
+package net.elpuig.Agenda.carga;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.Random;
+
+/**
+ * Genera config.txt y peticiones.txt sintéticos para las pruebas de carga.
+ * Con la misma semilla siempre produce los mismos archivos.
+ */
+class GeneradorEntradas {
+
+	private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("dd/MM/yyyy");
+	private static final String DIAS = "LMCJVSG";
+
+	private final Random random;
+
+	GeneradorEntradas(long semilla) {
+		this.random = new Random(semilla);
+	}
+
+	String config(YearMonth mes) {
+		return mes.getYear() + " " + mes.getMonthValue() + "\nESP ESP\n";
+	}
+
+	/**
+	 * Reservas de entre un día y cuatro meses alrededor del mes indicado, repartidas en
+	 * {@code salas} salas. Aproximadamente una de cada diez es un cierre (Tancat) de un día.
+	 */
+	String peticiones(YearMonth mes, int lineas, int salas) {
+		StringBuilder sb = new StringBuilder(lineas * 64);
+		LocalDate base = mes.atDay(1).minusMonths(1);
+		for (int i = 0; i < lineas; i++) {
+			String sala = "Sala" + (1 + random.nextInt(salas));
+			LocalDate inicio = base.plusDays(random.nextInt(90));
+			if (random.nextInt(10) == 0) {
+				sb.append("Tancat ").append(sala).append(' ')
+						.append(inicio.format(DATE_FORMATTER)).append(' ').append(inicio.format(DATE_FORMATTER))
+						.append(" LMCJVSG 00-24\n");
+				continue;
+			}
+			LocalDate fin = inicio.plusDays(random.nextInt(120));
+			int horaInicio = 7 + random.nextInt(12);
+			int horaFin = Math.min(24, horaInicio + 1 + random.nextInt(3));
+			sb.append("Actividad").append(i).append(' ').append(sala).append(' ')
+					.append(inicio.format(DATE_FORMATTER)).append(' ').append(fin.format(DATE_FORMATTER)).append(' ')
+					.append(dias()).append(' ')
+					.append(String.format("%02d-%02d", horaInicio, horaFin)).append('\n');
+		}
+		return sb.toString();
+	}
+
+	private String dias() {
+		StringBuilder dias = new StringBuilder();
+		for (char dia : DIAS.toCharArray()) {
+			if (random.nextInt(3) == 0) {
+				dias.append(dia);
+			}
+		}
+		return dias.isEmpty() ? "L" : dias.toString();
+	}
+}
@@ -0,0 +1,195 @@
+package net.elpuig.Agenda.controller;
+
+import net.elpuig.Agenda.service.DataLoader;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockMultipartHttpServletRequestBuilder;
+import org.thymeleaf.ITemplateEngine;
+import org.thymeleaf.context.IContext;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPOutputStream;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+class AgendaControllerTest {
+
+	private static final String CONFIG = "2025 3\nESP ESP\n";
+
+	@Autowired
+	private MockMvc mockMvc;
+
+	// Room tables are rendered with process("sala", selectors, context); full pages use the writer overload
+	@MockitoSpyBean
+	private ITemplateEngine templateEngine;
+
+	@Autowired
+	private DataLoader dataLoader;
+
+	@Test
+	void incidenciasIncluyenLaReservaPropietaria() throws Exception {
+		procesar("Mates Sala1 03/03/2025 14/03/2025 LC 08-10\n"
+				+ "Fisica Sala1 05/03/2025 12/03/2025 C 09-11\n");
+
+		mockMvc.perform(get("/incidencias"))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.length()").value(2))
+				.andExpect(jsonPath("$[0].tipo").value("CONFLICTO"))
+				.andExpect(jsonPath("$[0].reservaId").value(2))
+				.andExpect(jsonPath("$[0].actividad").value("Fisica"))
+				.andExpect(jsonPath("$[0].sala").value("Sala1"))
+				.andExpect(jsonPath("$[0].fecha").value("2025-03-05"))
+				.andExpect(jsonPath("$[0].franja").value("09:00-10:00"))
+				.andExpect(jsonPath("$[0].propietarioId").value(1))
+				.andExpect(jsonPath("$[0].propietarioActividad").value("Mates"))
+				.andExpect(jsonPath("$[0].mensaje").isString())
+				.andExpect(jsonPath("$[1].fecha").value("2025-03-12"));
+	}
+
+	@Test
+	void etagCoincidenteDevuelve304() throws Exception {
+		procesar("Mates Sala1 03/03/2025 31/03/2025 L 08-10\n");
+
+		String etag = mockMvc.perform(get("/agenda"))
+				.andExpect(status().isOk())
+				.andExpect(header().string(HttpHeaders.CACHE_CONTROL, "no-cache"))
+				.andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+		assertNotNull(etag);
+
+		mockMvc.perform(get("/agenda").header(HttpHeaders.IF_NONE_MATCH, etag))
+				.andExpect(status().isNotModified())
+				.andExpect(content().string(""));
+		mockMvc.perform(get("/agenda").header(HttpHeaders.IF_NONE_MATCH, "\"otra\""))
+				.andExpect(status().isOk());
+	}
+
+	@Test
+	void etagDeSalaSoloCambiaSiCambiaLaSala() throws Exception {
+		procesar("Mates Sala1 03/03/2025 31/03/2025 L 08-10\n"
+				+ "Fisica Sala2 03/03/2025 31/03/2025 M 08-10\n");
+		String sala1 = etag("/agenda?sala=Sala1");
+		String sala2 = etag("/agenda?sala=Sala2");
+
+		// Same Sala1, Sala2 moves to another hour
+		procesar("Mates Sala1 03/03/2025 31/03/2025 L 08-10\n"
+				+ "Fisica Sala2 03/03/2025 31/03/2025 M 10-12\n");
+
+		assertEquals(sala1, etag("/agenda?sala=Sala1"));
+		assertNotEquals(sala2, etag("/agenda?sala=Sala2"));
+	}
+
+	@Test
+	void segundaVistaNoVuelveARenderizarFragmentos() throws Exception {
+		procesar("Mates Aula7 03/03/2025 31/03/2025 L 08-10\n"
+				+ "Fisica Aula8 03/03/2025 31/03/2025 M 08-10\n");
+		clearInvocations(templateEngine);
+
+		String primera = mockMvc.perform(get("/agenda")).andExpect(status().isOk()).andReturn().getResponse().getContentAsString();
+		verify(templateEngine, times(2)).process(eq("sala"), anySet(), any(IContext.class));
+
+		String segunda = mockMvc.perform(get("/agenda")).andExpect(status().isOk()).andReturn().getResponse().getContentAsString();
+		verify(templateEngine, times(2)).process(eq("sala"), anySet(), any(IContext.class)); // Both rooms came from the cache
+		assertEquals(primera, segunda);
+	}
+
+	@Test
+	void unaSalaCerradaTodoElMesSeMuestraSinReservas() throws Exception {
+		procesar("Mates Sala1 03/03/2025 31/03/2025 L 08-10\n"
+				+ "Fisica Sala9 04/03/2025 04/03/2025 M 08-10\n", "Sala9 01/03/2025 31/03/2025\n");
+		clearInvocations(templateEngine);
+
+		String html = mockMvc.perform(get("/agenda"))
+				.andExpect(status().isOk())
+				.andReturn().getResponse().getContentAsString();
+		assertTrue(html.contains("<h2>Sala1</h2>"));
+		assertTrue(html.contains("<h2>Sala9</h2>"));
+		assertTrue(html.contains("Cerrado"));
+		verify(templateEngine).process(eq("sala"), anySet(), argThat(c -> "Sala9".equals(c.getVariable("sala"))));
+
+		String etag = mockMvc.perform(get("/agenda?sala=Sala9"))
+				.andExpect(status().isOk())
+				.andExpect(content().string(containsString("<h2>Sala9</h2>")))
+				.andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+		assertNotNull(etag);
+		mockMvc.perform(get("/agenda?sala=Sala9").header(HttpHeaders.IF_NONE_MATCH, etag))
+				.andExpect(status().isNotModified());
+		// Rendered once above, then served from the fragment cache
+		verify(templateEngine).process(eq("sala"), anySet(), argThat(c -> "Sala9".equals(c.getVariable("sala"))));
+
+		mockMvc.perform(get("/incidencias"))
+				.andExpect(jsonPath("$[0].tipo").value("CIERRE"))
+				.andExpect(jsonPath("$[0].sala").value("Sala9"));
+	}
+
+	@Test
+	void laAgendaMuestraLasLineasDeCalendarioIgnoradas() throws Exception {
+		String peticiones = "Mates Sala1 03/03/2025 31/03/2025 L 08-10\n";
+		procesar(peticiones, "* 19/03/2025\n");
+		String etagSinErrores = etag("/agenda");
+
+		procesar(peticiones, "* 19/03/2025\nSala1 32/03/2025\n");
+		String html = mockMvc.perform(get("/agenda"))
+				.andExpect(status().isOk())
+				.andReturn().getResponse().getContentAsString();
+		assertTrue(html.contains("Error en línea 2 de calendario.txt"), html);
+		assertFalse(html.contains("No se detectaron incidencias"));
+		// Same tables, but the page now lists the skipped line, so cached copies must be refreshed
+		assertNotEquals(etagSinErrores, etag("/agenda"));
+	}
+
+	@Test
+	void rechazaUnaEntradaQueSeInflaPorEncimaDelMaximo() throws Exception {
+		ByteArrayOutputStream gzip = new ByteArrayOutputStream();
+		try (GZIPOutputStream salida = new GZIPOutputStream(gzip)) {
+			salida.write(new byte[1 << 20]); // A single line of 1 MB
+		}
+		Object maxBytes = ReflectionTestUtils.getField(dataLoader, "maxBytesEntrada");
+		ReflectionTestUtils.setField(dataLoader, "maxBytesEntrada", 64 * 1024L);
+		try {
+			mockMvc.perform(multipart("/procesar")
+							.file(new MockMultipartFile("configFile", "config.txt", "text/plain", CONFIG.getBytes(StandardCharsets.UTF_8)))
+							.file(new MockMultipartFile("peticionesFile", "peticiones.txt.gz", "application/gzip", gzip.toByteArray())))
+					.andExpect(status().isFound())
+					.andExpect(redirectedUrl("/upload"))
+					.andExpect(flash().attribute("error", containsString("agenda.entrada.max-bytes")));
+		} finally {
+			ReflectionTestUtils.setField(dataLoader, "maxBytesEntrada", maxBytes);
+		}
+	}
+
+	private String etag(String url) throws Exception {
+		return mockMvc.perform(get(url)).andExpect(status().isOk()).andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+	}
+
+	private void procesar(String peticiones) throws Exception {
+		procesar(peticiones, null);
+	}
+
+	private void procesar(String peticiones, String calendario) throws Exception {
+		MockMultipartHttpServletRequestBuilder subida = multipart("/procesar")
+				.file(new MockMultipartFile("configFile", "config.txt", "text/plain", CONFIG.getBytes(StandardCharsets.UTF_8)))
+				.file(new MockMultipartFile("peticionesFile", "peticiones.txt", "text/plain", peticiones.getBytes(StandardCharsets.UTF_8)));
+		if (calendario != null) {
+			subida.file(new MockMultipartFile("calendarioFile", "calendario.txt", "text/plain", calendario.getBytes(StandardCharsets.UTF_8)));
+		}
+		mockMvc.perform(subida)
+				.andExpect(status().isFound())
+				.andExpect(redirectedUrl("/agenda"));
+	}
+}
@@ -0,0 +1,58 @@
+package net.elpuig.Agenda.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CalendarioCierresTest {
+
+	private static final int TARDE = CursorFranjas.mascaraHoras("14-16");
+
+	@Test
+	void combinaReglasGlobalesYDeSala() {
+		CalendarioCierres calendario = new CalendarioCierres(List.of(
+				new CalendarioCierres.Cierre("*", LocalDate.of(2025, 12, 25), LocalDate.of(2025, 12, 25), "00-24"),
+				new CalendarioCierres.Cierre("Sala1", LocalDate.of(2025, 8, 1), LocalDate.of(2025, 12, 31), "14-16")));
+
+		assertEquals(CursorFranjas.DIA_COMPLETO, calendario.getHorasCerradas("Sala2", LocalDate.of(2025, 12, 25)));
+		assertEquals(0, calendario.getHorasCerradas("Sala2", LocalDate.of(2025, 12, 24)));
+		assertEquals(TARDE, calendario.getHorasCerradas("Sala1", LocalDate.of(2025, 10, 1)));
+		assertEquals(0, calendario.getHorasCerradas("Sala1", LocalDate.of(2025, 7, 31)));
+		assertEquals(0, calendario.getHorasCerradas("Sala1", LocalDate.of(2026, 1, 1)));
+		assertTrue(calendario.tieneCierres("Sala9"));
+		assertFalse(CalendarioCierres.VACIO.tieneCierres("Sala1"));
+	}
+
+	@Test
+	void coincideConLaComprobacionDiaADia() {
+		Random random = new Random(7);
+		LocalDate base = LocalDate.of(2025, 1, 1);
+		List<CalendarioCierres.Cierre> cierres = new ArrayList<>();
+		for (int i = 0; i < 40; i++) {
+			LocalDate desde = base.plusDays(random.nextInt(400));
+			LocalDate hasta = desde.plusDays(random.nextInt(150));
+			int hora = random.nextInt(23);
+			cierres.add(new CalendarioCierres.Cierre(random.nextBoolean() ? "*" : "Sala" + random.nextInt(3),
+					desde, hasta, String.format("%02d-%02d", hora, hora + 1 + random.nextInt(24 - hora))));
+		}
+		CalendarioCierres calendario = new CalendarioCierres(cierres);
+
+		for (String sala : List.of("Sala0", "Sala1", "Sala2")) {
+			for (LocalDate dia = base.minusDays(5); dia.isBefore(base.plusDays(560)); dia = dia.plusDays(1)) {
+				int esperadas = 0;
+				for (CalendarioCierres.Cierre cierre : cierres) {
+					if ((cierre.sala().equals("*") || cierre.sala().equals(sala))
+							&& !dia.isBefore(cierre.desde()) && !dia.isAfter(cierre.hasta())) {
+						esperadas |= CursorFranjas.mascaraHoras(cierre.horarios());
+					}
+				}
+				assertEquals(esperadas, calendario.getHorasCerradas(sala, dia), sala + " " + dia);
+			}
+		}
+	}
+}
@@ -0,0 +1,78 @@
+package net.elpuig.Agenda.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CursorFranjasTest {
+
+	@Test
+	void recorreSoloLosDiasIncluidos() {
+		// 03/03/2025 is a Monday
+		Reserva reserva = new Reserva("Mates", "Sala1", LocalDate.of(2025, 3, 1), LocalDate.of(2025, 3, 16), "LC", "08-10_14-15");
+
+		List<LocalDate> dias = recorrer(new CursorFranjas().reiniciar(reserva));
+
+		assertEquals(List.of(LocalDate.of(2025, 3, 3), LocalDate.of(2025, 3, 5),
+				LocalDate.of(2025, 3, 10), LocalDate.of(2025, 3, 12)), dias);
+		assertEquals((1 << 8) | (1 << 9) | (1 << 14), reserva.getMascaraHoras());
+	}
+
+	@Test
+	void recortaALaVentana() {
+		Reserva reserva = new Reserva("Curso", "Sala1", LocalDate.of(2025, 1, 1), LocalDate.of(2025, 12, 31), "V", "00-24");
+
+		List<LocalDate> dias = recorrer(new CursorFranjas().reiniciar(reserva, LocalDate.of(2025, 3, 1), LocalDate.of(2025, 3, 31)));
+
+		assertEquals(List.of(LocalDate.of(2025, 3, 7), LocalDate.of(2025, 3, 14),
+				LocalDate.of(2025, 3, 21), LocalDate.of(2025, 3, 28)), dias);
+		assertTrue(recorrer(new CursorFranjas().reiniciar(reserva, LocalDate.of(2026, 1, 1), LocalDate.of(2026, 1, 31))).isEmpty());
+	}
+
+	@Test
+	void domingoConGyConD() {
+		assertEquals(1 << 6, CursorFranjas.mascaraDias("G"));
+		assertEquals(1 << 6, CursorFranjas.mascaraDias("D"));
+		assertEquals(CursorFranjas.DIA_COMPLETO, CursorFranjas.mascaraHoras("00-24"));
+		assertThrows(NumberFormatException.class, () -> CursorFranjas.mascaraHoras("10-08"));
+	}
+
+	@Test
+	void coincideConLaExpansionDiaADia() {
+		Random random = new Random(42);
+		String codigos = "LMCJVSG";
+		CursorFranjas cursor = new CursorFranjas();
+		for (int i = 0; i < 500; i++) {
+			LocalDate inicio = LocalDate.of(2024, 1, 1).plusDays(random.nextInt(800));
+			LocalDate fin = inicio.plusDays(random.nextInt(120));
+			StringBuilder dias = new StringBuilder();
+			for (char codigo : codigos.toCharArray()) {
+				if (random.nextBoolean()) {
+					dias.append(codigo);
+				}
+			}
+			Reserva reserva = new Reserva("A", "S", inicio, fin, dias.toString(), "09-10");
+
+			List<LocalDate> esperado = new ArrayList<>();
+			for (LocalDate fecha = inicio; !fecha.isAfter(fin); fecha = fecha.plusDays(1)) {
+				if (dias.indexOf(String.valueOf(codigos.charAt(fecha.getDayOfWeek().getValue() - 1))) >= 0) {
+					esperado.add(fecha);
+				}
+			}
+			assertEquals(esperado, recorrer(cursor.reiniciar(reserva)), reserva.toString());
+		}
+	}
+
+	private static List<LocalDate> recorrer(CursorFranjas cursor) {
+		List<LocalDate> dias = new ArrayList<>();
+		while (cursor.siguiente()) {
+			dias.add(cursor.getFecha());
+		}
+		return dias;
+	}
+}
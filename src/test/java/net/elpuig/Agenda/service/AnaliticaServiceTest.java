@@ -0,0 +1,108 @@
+package net.elpuig.Agenda.service;
+
+import net.elpuig.Agenda.model.AnaliticaSala;
+import net.elpuig.Agenda.model.CalendarioCierres;
+import net.elpuig.Agenda.model.Incidencia;
+import net.elpuig.Agenda.model.InformeUtilizacion;
+import net.elpuig.Agenda.model.Reserva;
+import net.elpuig.Agenda.model.ResultadoAgenda;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.Map;
+
+import static net.elpuig.Agenda.service.ResolucionReservasTest.reserva;
+import static org.junit.jupiter.api.Assertions.*;
+
+class AnaliticaServiceTest {
+
+	// 03/03/2025 is a Monday: the window is one full week
+	private static final LocalDate DESDE = LocalDate.of(2025, 3, 3);
+	private static final LocalDate HASTA = LocalDate.of(2025, 3, 9);
+
+	private final AnaliticaService analiticaService = new AnaliticaService();
+
+	@Test
+	void calculaLaUtilizacionDeLaVentana() {
+		Reserva a = reserva(1, "A", "Sala1", 3, 14, "LMCJV", "08-10");
+		Reserva fuera = reserva(5, "E", "Sala1", 20, 20, "J", "12-13");
+		Reserva b = reserva(6, "B", "Sala2", 4, 4, "M", "08-20");
+
+		InformeUtilizacion informe = analiticaService.calcular(resultado(List.of(a, fuera, b), List.of()), DESDE, HASTA, 1);
+
+		assertEquals(List.of("Sala1", "Sala2"), informe.getSalas().stream().map(AnaliticaSala::getSala).toList());
+		assertEquals(List.of("Sala1"), informe.getSalasMenosUtilizadas());
+
+		AnaliticaSala sala1 = informe.getSalas().get(0);
+		// Only the first week of A falls in the window: 5 days x 2 hours
+		assertEquals(10, sala1.getHorasOcupadas());
+		assertEquals(7 * 24, sala1.getHorasDisponibles());
+		assertEquals(0.0595, sala1.getUtilizacion());
+		assertEquals(0.0833, sala1.getUtilizacionPorDiaSemana()[0]);
+		assertEquals(0, sala1.getUtilizacionPorDiaSemana()[6]);
+		assertEquals(0.2381, sala1.getUtilizacionPorFranja().get("08-14"));
+		assertEquals(0, sala1.getUtilizacionPorFranja().get("14-20"));
+		assertEquals(1.0, sala1.getMatrizUtilizacion()[4][9]);
+		assertEquals(0, sala1.getMatrizUtilizacion()[5][9]);
+		assertEquals(List.of(8, 9), sala1.getHorasPico());
+	}
+
+	@Test
+	void lasHorasCerradasNoCuentanComoDisponibles() {
+		Reserva a = reserva(1, "A", "Sala1", 3, 14, "LMCJV", "08-10");
+		CalendarioCierres calendario = new CalendarioCierres(List.of(
+				new CalendarioCierres.Cierre("*", LocalDate.of(2025, 3, 8), HASTA, "00-24"),
+				new CalendarioCierres.Cierre("Sala1", DESDE, HASTA, "20-24")));
+
+		AnaliticaSala sala1 = analiticaService.calcular(resultado(List.of(a), List.of(), calendario), DESDE, HASTA, 5)
+				.getSalas().get(0);
+
+		// Weekend closed all day, weekdays from 20 to 24: 48 + 5 x 4 hours
+		assertEquals(7 * 24 - 68, sala1.getHorasDisponibles());
+		assertEquals(0.1, sala1.getUtilizacion());
+		assertEquals(0.1, sala1.getUtilizacionPorDiaSemana()[0]);
+		assertEquals(0, sala1.getUtilizacionPorDiaSemana()[6]);
+		assertEquals(0.3333, sala1.getUtilizacionPorFranja().get("08-14"));
+		assertEquals(0, sala1.getUtilizacionPorFranja().get("20-24"));
+		assertEquals(1.0, sala1.getMatrizUtilizacion()[0][8]);
+		assertEquals(0, sala1.getMatrizUtilizacion()[5][8]);
+	}
+
+	@Test
+	void laTasaDeRechazoSoloCuentaLaVentana() {
+		Reserva a = reserva(1, "A", "Sala1", 3, 14, "LMCJV", "08-10");
+		Reserva enVentana = reserva(2, "B", "Sala1", 5, 5, "C", "09-11");
+		Reserva fueraDeVentana = reserva(3, "C", "Sala1", 12, 12, "C", "09-11");
+		Reserva sinFecha = reserva(4, "D", "Sala1", 3, 3, "L", "xx");
+		List<Incidencia> incidencias = List.of(
+				Incidencia.conflicto(enVentana, LocalDate.of(2025, 3, 5), "09:00-10:00", a),
+				Incidencia.conflicto(fueraDeVentana, LocalDate.of(2025, 3, 12), "09:00-10:00", a),
+				Incidencia.formato(sinFecha, "xx"));
+
+		AnaliticaSala sala1 = analiticaService.calcular(resultado(List.of(a), incidencias), DESDE, HASTA, 5)
+				.getSalas().get(0);
+
+		// A and B have slots in the window and D has no date; C is only rejected on 12/03
+		assertEquals(3, sala1.getReservasSolicitadas());
+		assertEquals(2, sala1.getReservasRechazadas());
+		assertEquals(0.6667, sala1.getTasaRechazo());
+
+		AnaliticaSala mesCompleto = analiticaService.calcular(resultado(List.of(a), incidencias),
+				LocalDate.of(2025, 3, 1), LocalDate.of(2025, 3, 31), 5).getSalas().get(0);
+		assertEquals(4, mesCompleto.getReservasSolicitadas());
+		assertEquals(0.75, mesCompleto.getTasaRechazo());
+	}
+
+	private static ResultadoAgenda resultado(List<Reserva> aceptadas, List<Incidencia> incidencias) {
+		return resultado(aceptadas, incidencias, CalendarioCierres.VACIO);
+	}
+
+	private static ResultadoAgenda resultado(List<Reserva> aceptadas, List<Incidencia> incidencias,
+											 CalendarioCierres calendario) {
+		return new ResultadoAgenda("analitica", Instant.EPOCH, YearMonth.of(2025, 3), "ESP", Map.of(),
+				aceptadas, List.of(), incidencias, List.of(), calendario);
+	}
+}
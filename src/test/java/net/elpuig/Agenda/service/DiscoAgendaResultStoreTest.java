@@ -0,0 +1,101 @@
+package net.elpuig.Agenda.service;
+
+import net.elpuig.Agenda.model.CalendarioCierres;
+import net.elpuig.Agenda.model.Incidencia;
+import net.elpuig.Agenda.model.Reserva;
+import net.elpuig.Agenda.model.ResultadoAgenda;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static net.elpuig.Agenda.service.ResolucionReservasTest.reserva;
+import static org.junit.jupiter.api.Assertions.*;
+
+class DiscoAgendaResultStoreTest {
+
+	@TempDir
+	Path directorio;
+
+	@Test
+	void otroNodoLeeElMismoResultado() throws IOException {
+		ResultadoAgenda resultado = resultado();
+		store(0).guardar(resultado);
+
+		// A second store has an empty near-cache, so it reads the JSON file
+		DiscoAgendaResultStore otroNodo = store(0);
+		ResultadoAgenda leido = otroNodo.obtener(resultado.getId());
+		assertNotNull(leido);
+		assertNotSame(resultado, leido);
+		assertEquals(resultado.getHuella(), leido.getHuella());
+		assertEquals(resultado.getHuellasPorSala(), leido.getHuellasPorSala());
+		assertEquals(Incidencia.TIPO_CONFLICTO, leido.getIncidenciasDetalladas().get(0).getTipo());
+
+		assertEquals(resultado.getId(), otroNodo.obtenerUltimo().getId());
+	}
+
+	@Test
+	void sinResultadosNoHayUltimo() throws IOException {
+		assertNull(store(0).obtenerUltimo());
+	}
+
+	@Test
+	void rechazaIdsQueNoSonUuid() throws IOException {
+		DiscoAgendaResultStore store = store(0);
+		Files.writeString(directorio.resolve("x.json"), "{}");
+		Files.writeString(directorio.getParent().resolve("fuera.json"), "{}");
+
+		assertNull(store.obtener(null));
+		assertNull(store.obtener("x"));
+		assertNull(store.obtener("../fuera"));
+		assertNull(store.obtener(UUID.randomUUID().toString())); // Valid but never saved
+	}
+
+	@Test
+	void conservaSoloLosResultadosMasRecientes() throws IOException {
+		DiscoAgendaResultStore store = store(2);
+		ResultadoAgenda primero = resultado();
+		ResultadoAgenda segundo = resultado();
+		ResultadoAgenda tercero = resultado();
+		store.guardar(primero);
+		store.guardar(segundo);
+		Files.setLastModifiedTime(directorio.resolve(primero.getId() + ".json"), FileTime.fromMillis(0));
+		store.guardar(tercero);
+
+		assertFalse(Files.exists(directorio.resolve(primero.getId() + ".json")));
+		assertTrue(Files.exists(directorio.resolve(segundo.getId() + ".json")));
+		assertTrue(Files.exists(directorio.resolve(tercero.getId() + ".json")));
+		assertNull(store.obtener(primero.getId()));
+		assertEquals(tercero.getId(), store(2).obtenerUltimo().getId());
+	}
+
+	private DiscoAgendaResultStore store(int retencion) throws IOException {
+		DiscoAgendaResultStore store = new DiscoAgendaResultStore();
+		ReflectionTestUtils.setField(store, "objectMapper", Jackson2ObjectMapperBuilder.json().build());
+		ReflectionTestUtils.setField(store, "directorio", directorio);
+		ReflectionTestUtils.setField(store, "retencion", retencion);
+		store.init();
+		return store;
+	}
+
+	private static ResultadoAgenda resultado() {
+		Reserva a = reserva(1, "A", "Sala1", 3, 14, "LC", "08-10");
+		Reserva b = reserva(2, "B", "Sala1", 5, 5, "C", "09-11");
+		CalendarioCierres calendario = new CalendarioCierres(List.of(
+				new CalendarioCierres.Cierre("*", LocalDate.of(2025, 3, 19), LocalDate.of(2025, 3, 19), "00-24")));
+		return new ResultadoAgenda(UUID.randomUUID().toString(), Instant.now(), YearMonth.of(2025, 3), "ESP",
+				Map.of("001", "Setmana"), List.of(a), List.of("Conflicto"),
+				List.of(Incidencia.conflicto(b, LocalDate.of(2025, 3, 5), "09:00-10:00", a)), List.of(), calendario);
+	}
+}
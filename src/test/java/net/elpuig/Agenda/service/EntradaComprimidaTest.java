@@ -0,0 +1,104 @@
+package net.elpuig.Agenda.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EntradaComprimidaTest {
+
+	private static final String PETICIONES = "Clase Sala1 01/03/2025 31/03/2025 LMCJV 08-10\n";
+
+	@Test
+	void elTextoPlanoSeDevuelveTalCual() throws IOException {
+		assertEquals(PETICIONES, leer(PETICIONES.getBytes(StandardCharsets.UTF_8)));
+	}
+
+	@Test
+	void descomprimeGzip() throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (GZIPOutputStream gzip = new GZIPOutputStream(bytes)) {
+			gzip.write(PETICIONES.getBytes(StandardCharsets.UTF_8));
+		}
+		assertEquals(PETICIONES, leer(bytes.toByteArray()));
+	}
+
+	@Test
+	void leeElPrimerArchivoDelZipSaltandoDirectorios() throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (ZipOutputStream zip = new ZipOutputStream(bytes)) {
+			zip.putNextEntry(new ZipEntry("entrada/"));
+			zip.closeEntry();
+			zip.putNextEntry(new ZipEntry("entrada/peticiones.txt"));
+			zip.write(PETICIONES.getBytes(StandardCharsets.UTF_8));
+			zip.closeEntry();
+			zip.putNextEntry(new ZipEntry("entrada/otro.txt"));
+			zip.write("ignorado\n".getBytes(StandardCharsets.UTF_8));
+			zip.closeEntry();
+		}
+		assertEquals(PETICIONES, leer(bytes.toByteArray()));
+	}
+
+	@Test
+	void rechazaUnZipSinArchivos() throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (ZipOutputStream zip = new ZipOutputStream(bytes)) {
+			zip.putNextEntry(new ZipEntry("vacio/"));
+			zip.closeEntry();
+		}
+		IOException error = assertThrows(IOException.class, () -> leer(bytes.toByteArray()));
+		assertTrue(error.getMessage().contains("peticiones.txt"), error.getMessage());
+	}
+
+	@Test
+	void rechazaZstd() {
+		byte[] zstd = {0x28, (byte) 0xB5, 0x2F, (byte) 0xFD, 0x00, 0x00};
+		IOException error = assertThrows(IOException.class, () -> leer(zstd));
+		assertTrue(error.getMessage().contains("zstd"), error.getMessage());
+	}
+
+	@Test
+	void losArchivosDeMenosDeCuatroBytesSonTextoPlano() throws IOException {
+		assertEquals("", leer(new byte[0]));
+		assertEquals("PK\n", leer("PK\n".getBytes(StandardCharsets.UTF_8)));
+		// Only the first gzip byte: too short to be compressed
+		assertEquals("\u001F", leer(new byte[]{0x1F}));
+	}
+
+	@Test
+	void limitaLosBytesDescomprimidos() throws IOException {
+		// 1 MB of a single line compresses to about a kilobyte
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (GZIPOutputStream gzip = new GZIPOutputStream(bytes)) {
+			gzip.write(new byte[1 << 20]);
+		}
+		assertTrue(bytes.size() < 4096);
+
+		IOException error = assertThrows(EntradaComprimida.EntradaDemasiadoGrandeException.class,
+				() -> leer(bytes.toByteArray(), 64 * 1024));
+		assertTrue(error.getMessage().contains("peticiones.txt"), error.getMessage());
+		assertTrue(error.getMessage().contains("agenda.entrada.max-bytes"), error.getMessage());
+
+		assertEquals(1 << 20, leer(bytes.toByteArray(), 1 << 20).length());
+		assertThrows(EntradaComprimida.EntradaDemasiadoGrandeException.class,
+				() -> leer(PETICIONES.getBytes(StandardCharsets.UTF_8), PETICIONES.length() - 1));
+	}
+
+	private static String leer(byte[] contenido) throws IOException {
+		return leer(contenido, Long.MAX_VALUE);
+	}
+
+	private static String leer(byte[] contenido, long maxBytes) throws IOException {
+		try (InputStream entrada = EntradaComprimida.abrir(new ByteArrayInputStream(contenido), "peticiones.txt", maxBytes)) {
+			return new String(entrada.readAllBytes(), StandardCharsets.UTF_8);
+		}
+	}
+}
@@ -0,0 +1,27 @@
+package net.elpuig.Agenda.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class I18nServiceTest {
+
+	@Test
+	void todosLosIdiomasTraducenLasFranjasCerradas() {
+		I18nService i18nService = new I18nService();
+		i18nService.init();
+
+		Map<String, Map<String, String>> idiomas = i18nService.getTodosLosIdiomasTraducciones();
+		assertEquals(9, idiomas.size());
+		for (String idioma : idiomas.keySet()) {
+			// The agenda writes this text in every closed cell
+			String cerrado = idiomas.get(idioma).get("closed");
+			assertNotNull(cerrado, "Falta 'closed' en " + idioma);
+			assertFalse(cerrado.isBlank(), "'closed' vacío en " + idioma);
+		}
+		assertEquals("Geschlossen", i18nService.getTraduccionesPorIdioma("DEU").get("closed"));
+		assertEquals("已关闭", i18nService.getTraduccionesPorIdioma("ZHO").get("closed"));
+	}
+}
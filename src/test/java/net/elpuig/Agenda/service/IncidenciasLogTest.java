@@ -0,0 +1,124 @@
+package net.elpuig.Agenda.service;
+
+import net.elpuig.Agenda.model.Incidencia;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IncidenciasLogTest {
+
+	private static final Pattern LINEA = Pattern.compile(" linea=(\\d+) ");
+
+	@TempDir
+	Path directorio;
+
+	@Test
+	void escribeTodosLosRegistrosRotandoElArchivo() throws Exception {
+		Path archivo = directorio.resolve("incidencies.log");
+		// Enough rotations to keep every record: none may be lost between producers and files
+		IncidenciasLog log = crear(archivo, 100_000, 16_384, 50);
+
+		try (ExecutorService productores = Executors.newFixedThreadPool(4)) {
+			List<Future<?>> tareas = new ArrayList<>();
+			for (int p = 0; p < 4; p++) {
+				int primera = p * 250;
+				tareas.add(productores.submit(() -> {
+					for (int linea = primera + 1; linea <= primera + 250; linea++) {
+						assertTrue(log.registrar(Incidencia.TIPO_FORMATO, "peticiones.txt", linea, "Sala1", LocalDate.of(2025, 3, 1), "08:00-09:00", "Formato inválido"));
+					}
+				}));
+			}
+			for (Future<?> tarea : tareas) {
+				tarea.get(); // Rethrows a failed assertion of the producer
+			}
+		}
+		log.detener();
+
+		List<String> lineas = leerRotaciones(directorio, 50);
+		assertTrue(Files.exists(directorio.resolve("incidencies.log.1")));
+		assertEquals(0, log.getDescartados());
+		assertEquals(IntStream.rangeClosed(1, 1000).boxed().toList(), lineas.stream().map(IncidenciasLogTest::linea).sorted().toList());
+		assertTrue(lineas.getFirst().contains(" FORMATO archivo=peticiones.txt linea="));
+		assertTrue(lineas.getLast().endsWith("sala=Sala1 fecha=2025-03-01 franja=08:00-09:00 motivo=Formato inválido"));
+	}
+
+	@Test
+	void laRotacionDescartaLosArchivosMasAntiguos() throws Exception {
+		Path archivo = directorio.resolve("incidencies.log");
+		IncidenciasLog log = crear(archivo, 100_000, 16_384, 3);
+
+		// A single producer: the files hold the records in the order they were registered
+		for (int linea = 1; linea <= 1000; linea++) {
+			assertTrue(log.registrar(Incidencia.TIPO_CONFLICTO, "peticiones.txt", linea, "Sala1", LocalDate.of(2025, 3, 1), "08:00-09:00", "Ocupada"));
+		}
+		log.detener();
+
+		assertFalse(Files.exists(directorio.resolve("incidencies.log.4")));
+		List<String> lineas = leerRotaciones(directorio, 3);
+		// The oldest rotations were dropped: exactly the newest records are kept, none missing
+		int conservadas = lineas.size();
+		assertTrue(conservadas < 1000);
+		assertEquals(IntStream.rangeClosed(1001 - conservadas, 1000).boxed().toList(),
+				lineas.stream().map(IncidenciasLogTest::linea).toList());
+	}
+
+	@Test
+	void descartaCuandoLaColaSigueLlena() throws Exception {
+		IncidenciasLog log = crear(directorio.resolve("incidencies.log"), 10_000_000, 1 << 20, 1);
+		ReflectionTestUtils.setField(log, "capacidad", 0);
+		ReflectionTestUtils.setField(log, "esperaMs", 1L);
+
+		assertFalse(log.registrar(Incidencia.TIPO_FORMATO, "calendario.txt", 1, null, null, null, "x"));
+		assertEquals(1, log.getDescartados());
+		log.detener();
+
+		assertTrue(Files.readString(directorio.resolve("incidencies.log")).contains("DESCARTADAS total=1"));
+		assertEquals(1, log.getDescartados()); // Writing the DESCARTADAS line does not reset the total
+	}
+
+	// Current file and its rotations, oldest first; each one within maxBytes
+	private static List<String> leerRotaciones(Path directorio, int rotaciones) throws IOException {
+		List<String> lineas = new ArrayList<>();
+		for (int i = rotaciones; i >= 0; i--) {
+			Path parte = directorio.resolve(i == 0 ? "incidencies.log" : "incidencies.log." + i);
+			if (Files.exists(parte)) {
+				assertTrue(Files.size(parte) <= 16_384, parte.toString());
+				lineas.addAll(Files.readAllLines(parte));
+			}
+		}
+		return lineas;
+	}
+
+	private static int linea(String registro) {
+		Matcher matcher = LINEA.matcher(registro);
+		assertTrue(matcher.find(), registro);
+		return Integer.parseInt(matcher.group(1));
+	}
+
+	private static IncidenciasLog crear(Path archivo, int capacidad, long maxBytes, int rotaciones) {
+		IncidenciasLog log = new IncidenciasLog();
+		ReflectionTestUtils.setField(log, "archivo", archivo.toString());
+		ReflectionTestUtils.setField(log, "capacidad", capacidad);
+		ReflectionTestUtils.setField(log, "tamanoLote", 64);
+		ReflectionTestUtils.setField(log, "maxBytes", maxBytes);
+		ReflectionTestUtils.setField(log, "rotaciones", rotaciones);
+		ReflectionTestUtils.setField(log, "esperaMs", 50L);
+		log.iniciar();
+		return log;
+	}
+}
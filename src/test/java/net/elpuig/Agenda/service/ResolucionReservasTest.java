@@ -0,0 +1,201 @@
+package net.elpuig.Agenda.service;
+
+import net.elpuig.Agenda.model.CalendarioCierres;
+import net.elpuig.Agenda.model.Incidencia;
+import net.elpuig.Agenda.model.ProgresoProcesamiento;
+import net.elpuig.Agenda.model.Reserva;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ResolucionReservasTest {
+
+	@Test
+	void informaDeCadaFranjaEnConflictoConSuPropietario() {
+		// 03/03/2025 is a Monday: A holds Mon and Wed 08-10 for two weeks
+		Reserva a = reserva(1, "A", "Sala1", 3, 14, "LC", "08-10");
+		Reserva b = reserva(2, "B", "Sala1", 5, 12, "C", "09-11");
+
+		ResolucionReservas resolucion = new ResolucionReservas();
+		new EstrategiaFcfs().resolver(List.of(a, b), resolucion);
+
+		assertEquals(List.of(a), resolucion.getAceptadas());
+		List<Incidencia> incidencias = resolucion.getIncidencias();
+		// B overlaps A at 09-10 on 05/03 and 12/03, reported in a single pass
+		assertEquals(2, incidencias.size());
+		for (Incidencia incidencia : incidencias) {
+			assertEquals(Incidencia.TIPO_CONFLICTO, incidencia.getTipo());
+			assertEquals(2, incidencia.getReservaId());
+			assertEquals(1, incidencia.getPropietarioId());
+			assertEquals("A", incidencia.getPropietarioActividad());
+			assertEquals("09:00-10:00", incidencia.getFranja());
+		}
+		assertEquals(List.of(LocalDate.of(2025, 3, 5), LocalDate.of(2025, 3, 12)),
+				incidencias.stream().map(Incidencia::getFecha).toList());
+	}
+
+	@Test
+	void parcialAceptaLosTramosLibresConElMismoId() {
+		Reserva a = reserva(1, "A", "Sala1", 3, 14, "L", "08-10");
+		// Mondays 03 and 10 clash with A; Wednesdays and the last week are free
+		Reserva b = reserva(2, "B", "Sala1", 3, 21, "LC", "09-10");
+
+		ResolucionReservas resolucion = new ResolucionReservas();
+		new EstrategiaAceptacionParcial().resolver(List.of(a, b), resolucion);
+
+		List<Reserva> aceptadas = resolucion.getAceptadas();
+		assertEquals(3, aceptadas.size());
+		assertSame(a, aceptadas.get(0));
+		assertFragmento(aceptadas.get(1), 2, 5, 5);
+		assertFragmento(aceptadas.get(2), 2, 12, 19); // Ends on the last included weekday
+		assertEquals(List.of(LocalDate.of(2025, 3, 3), LocalDate.of(2025, 3, 10)),
+				resolucion.getIncidencias().stream().map(Incidencia::getFecha).toList());
+		resolucion.getIncidencias().forEach(incidencia -> assertEquals(1, incidencia.getPropietarioId()));
+	}
+
+	@Test
+	void prioridadResuelveCierresPrimeroYRespetaElOrdenDeLlegada() {
+		Reserva x = reserva(1, "X", "Sala1", 3, 3, "L", "08-09");
+		Reserva tancat = reserva(2, "Tancat", "Sala1", 3, 3, "L", "00-24");
+		Reserva y = reserva(3, "Y", "Sala2", 3, 3, "L", "10-11");
+		Reserva z = reserva(4, "Z", "Sala2", 3, 3, "L", "10-11");
+
+		ResolucionReservas resolucion = new ResolucionReservas();
+		new EstrategiaPrioridadActividad().resolver(List.of(x, tancat, y, z), resolucion);
+
+		assertEquals(List.of(tancat, y), resolucion.getAceptadas());
+		List<Incidencia> incidencias = resolucion.getIncidencias();
+		assertEquals(2, incidencias.size());
+		assertEquals(1, incidencias.get(0).getReservaId());
+		assertEquals(2, incidencias.get(0).getPropietarioId());
+		assertEquals(4, incidencias.get(1).getReservaId());
+		assertEquals(3, incidencias.get(1).getPropietarioId());
+	}
+
+	@Test
+	void maxHorasColocaPrioritariasYLuegoPorPeso() {
+		Reserva corta = reserva(1, "Corta", "Sala1", 3, 3, "L", "09-10");
+		Reserva larga = reserva(2, "Larga", "Sala1", 3, 31, "L", "08-10");
+		Reserva tancat = reserva(3, "Tancat", "Sala1", 4, 4, "M", "00-24");
+
+		EstrategiaMaximoHoras estrategia = new EstrategiaMaximoHoras();
+		ReflectionTestUtils.setField(estrategia, "prioridad", new EstrategiaPrioridadActividad());
+		ResolucionReservas resolucion = new ResolucionReservas();
+		estrategia.resolver(List.of(corta, larga, tancat), resolucion);
+
+		assertEquals(List.of(tancat, larga), resolucion.getAceptadas());
+		assertEquals(10, ResolucionReservas.contarHoras(larga));
+		Incidencia incidencia = resolucion.getIncidencias().getFirst();
+		assertEquals(1, incidencia.getReservaId());
+		assertEquals(2, incidencia.getPropietarioId());
+	}
+
+	@Test
+	void fcfsDecideIgualQueLaVersionOriginal() {
+		Random random = new Random(11);
+		List<Reserva> reservas = new ArrayList<>();
+		for (int i = 1; i <= 300; i++) {
+			int inicio = 1 + random.nextInt(25);
+			int hora = 6 + random.nextInt(14);
+			StringBuilder dias = new StringBuilder();
+			for (char dia : "LMCJVSG".toCharArray()) {
+				if (random.nextInt(4) == 0) {
+					dias.append(dia);
+				}
+			}
+			reservas.add(reserva(i, "A" + i, "Sala" + random.nextInt(4), inicio, Math.min(31, inicio + random.nextInt(10)),
+					dias.isEmpty() ? "L" : dias.toString(), String.format("%02d-%02d", hora, hora + 1 + random.nextInt(3))));
+		}
+
+		ResolucionReservas resolucion = new ResolucionReservas();
+		new EstrategiaFcfs().resolver(reservas, resolucion);
+
+		assertEquals(aceptadasOriginal(reservas), resolucion.getAceptadas().stream().map(Reserva::getId).toList());
+	}
+
+	// Accept/reject rule of the original AgendaProcessor: day by day, slot by slot, all or nothing in arrival order
+	private static List<Integer> aceptadasOriginal(List<Reserva> reservas) {
+		Set<String> ocupadas = new HashSet<>();
+		List<Integer> aceptadas = new ArrayList<>();
+		for (Reserva reserva : reservas) {
+			List<String> franjas = new ArrayList<>();
+			for (LocalDate fecha = reserva.getFechaInicio(); !fecha.isAfter(reserva.getFechaFin()); fecha = fecha.plusDays(1)) {
+				if (reserva.getDiasSemana().indexOf("LMCJVSG".charAt(fecha.getDayOfWeek().getValue() - 1)) < 0) {
+					continue;
+				}
+				for (String horario : reserva.getHorarios().split("_")) {
+					String[] horas = horario.split("-");
+					for (int h = Integer.parseInt(horas[0]); h < Integer.parseInt(horas[1]); h++) {
+						franjas.add(reserva.getSala() + "|" + fecha + "|" + h);
+					}
+				}
+			}
+			if (franjas.stream().noneMatch(ocupadas::contains)) {
+				ocupadas.addAll(franjas);
+				aceptadas.add(reserva.getId());
+			}
+		}
+		return aceptadas;
+	}
+
+	private static void assertFragmento(Reserva fragmento, int id, int diaInicio, int diaFin) {
+		assertEquals(id, fragmento.getId());
+		assertEquals(LocalDate.of(2025, 3, diaInicio), fragmento.getFechaInicio());
+		assertEquals(LocalDate.of(2025, 3, diaFin), fragmento.getFechaFin());
+	}
+
+	@Test
+	void unHorarioIlegibleSoloApareceEnElMensaje() {
+		Reserva ilegible = reserva(1, "A", "Sala1", 3, 3, "L", "xx");
+
+		ResolucionReservas resolucion = new ResolucionReservas();
+		new EstrategiaFcfs().resolver(List.of(ilegible), resolucion);
+
+		assertTrue(resolucion.getAceptadas().isEmpty());
+		Incidencia incidencia = resolucion.getIncidencias().getFirst();
+		assertEquals(Incidencia.TIPO_FORMATO, incidencia.getTipo());
+		assertEquals(1, incidencia.getReservaId());
+		assertNull(incidencia.getFecha());
+		assertNull(incidencia.getFranja());
+		assertTrue(incidencia.getMensaje().endsWith(": xx"), incidencia.getMensaje());
+	}
+
+	@Test
+	void rechazaLasReservasQueCoincidenConUnCierre() {
+		CalendarioCierres calendario = new CalendarioCierres(List.of(
+				new CalendarioCierres.Cierre("*", LocalDate.of(2025, 3, 5), LocalDate.of(2025, 3, 5), "00-24"),
+				new CalendarioCierres.Cierre("Sala1", LocalDate.of(2025, 3, 10), LocalDate.of(2025, 3, 14), "09-10")));
+		Reserva a = reserva(1, "A", "Sala1", 3, 14, "LC", "08-10");
+		Reserva otraSala = reserva(2, "B", "Sala2", 3, 3, "L", "08-10");
+		Reserva fueraDelCierre = reserva(3, "C", "Sala1", 11, 11, "M", "08-09");
+
+		ResolucionReservas resolucion = new ResolucionReservas(new ProgresoProcesamiento(), calendario);
+		new EstrategiaFcfs().resolver(List.of(a, otraSala, fueraDelCierre), resolucion);
+
+		assertEquals(List.of(otraSala, fueraDelCierre), resolucion.getAceptadas());
+		List<Incidencia> incidencias = resolucion.getIncidencias();
+		for (Incidencia incidencia : incidencias) {
+			assertEquals(Incidencia.TIPO_CIERRE, incidencia.getTipo());
+			assertEquals(1, incidencia.getReservaId());
+			assertNull(incidencia.getPropietarioId());
+		}
+		// The whole-day closure on 05/03 hits both hours, the Sala1 closure only 09-10
+		assertEquals(List.of("2025-03-05 08:00-09:00", "2025-03-05 09:00-10:00",
+						"2025-03-10 09:00-10:00", "2025-03-12 09:00-10:00"),
+				incidencias.stream().map(i -> i.getFecha() + " " + i.getFranja()).toList());
+	}
+
+	static Reserva reserva(int id, String actividad, String sala, int diaInicio, int diaFin, String dias, String horarios) {
+		Reserva reserva = new Reserva(actividad, sala, LocalDate.of(2025, 3, diaInicio), LocalDate.of(2025, 3, diaFin), dias, horarios);
+		reserva.setId(id);
+		return reserva;
+	}
+}